@@ -0,0 +1,55 @@
+package org.xomda.common.function;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares {@link Functions#mapOrGet(org.xomda.common.exception.SneakyThrow.ThrowingFunction, Function) mapOrGet}
+ * with a plain try/catch, when the mapper succeeds and when it fails.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FunctionsBenchmark {
+
+	private final Function<String, Integer> mapOrGet = Functions.mapOrGet(Integer::parseInt, s -> -1);
+
+	public String valid = "12345";
+	public String invalid = "12a45";
+
+	@Benchmark
+	public int mapOrGetSuccess() {
+		return mapOrGet.apply(valid);
+	}
+
+	@Benchmark
+	public int tryCatchSuccess() {
+		return parse(valid);
+	}
+
+	@Benchmark
+	public int mapOrGetFailure() {
+		return mapOrGet.apply(invalid);
+	}
+
+	@Benchmark
+	public int tryCatchFailure() {
+		return parse(invalid);
+	}
+
+	private static int parse(String s) {
+		try {
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
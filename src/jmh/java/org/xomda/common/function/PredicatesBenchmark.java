@@ -0,0 +1,78 @@
+package org.xomda.common.function;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the composed and cached predicates with testing the plain predicates directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PredicatesBenchmark {
+
+	// the number of distinct values which are tested, so the cache stays warm
+	private static final int KEYS = 1 << 10;
+
+	private final Predicate<Integer> isEven = i -> (i & 1) == 0;
+	private final Predicate<Integer> isPositive = i -> i > 0;
+	private final Predicate<Integer> isSmall = i -> i < 100;
+
+	private Predicate<Integer> cached;
+	private Predicate<Integer> any;
+	private Predicate<Integer> all;
+
+	private int i;
+
+	@Setup
+	public void setup() {
+		cached = Predicates.cached(isEven);
+		any = Predicates.any(isEven, isPositive, isSmall);
+		all = Predicates.all(isEven, isPositive, isSmall);
+	}
+
+	private Integer next() {
+		return i++ & (KEYS - 1);
+	}
+
+	@Benchmark
+	public boolean direct() {
+		return isEven.test(next());
+	}
+
+	@Benchmark
+	public boolean cached() {
+		return cached.test(next());
+	}
+
+	@Benchmark
+	public boolean anyDirect() {
+		final Integer value = next();
+		return isEven.test(value) || isPositive.test(value) || isSmall.test(value);
+	}
+
+	@Benchmark
+	public boolean any() {
+		return any.test(next());
+	}
+
+	@Benchmark
+	public boolean allDirect() {
+		final Integer value = next();
+		return isEven.test(value) && isPositive.test(value) && isSmall.test(value);
+	}
+
+	@Benchmark
+	public boolean all() {
+		return all.test(next());
+	}
+
+}
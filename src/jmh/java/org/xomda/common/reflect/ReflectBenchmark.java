@@ -0,0 +1,54 @@
+package org.xomda.common.reflect;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares invoking a method through {@link Reflect#findInvoker(Class, String, Class[]) an invoker}
+ * with a direct call and with plain reflection, and measures the lookup itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReflectBenchmark {
+
+	public String subject = "benchmark";
+
+	private Reflect.Invoker invoker;
+	private Method method;
+
+	@Setup
+	public void setup() throws NoSuchMethodException {
+		invoker = Reflect.findInvoker(String.class, "indexOf", String.class).orElseThrow();
+		method = String.class.getMethod("indexOf", String.class);
+	}
+
+	@Benchmark
+	public int direct() {
+		return subject.indexOf("mark");
+	}
+
+	@Benchmark
+	public Object reflection() throws Exception {
+		return method.invoke(subject, "mark");
+	}
+
+	@Benchmark
+	public Object invoker() throws Throwable {
+		return invoker.invoke(subject, "mark");
+	}
+
+	@Benchmark
+	public Object findInvoker() {
+		return Reflect.findInvoker(String.class, "indexOf", String.class);
+	}
+
+}
@@ -0,0 +1,63 @@
+package org.xomda.common.util.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Drains a stream of which every element takes a while to produce,
+ * directly and through the different caches of a {@link BufferedStream}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BufferedStreamBenchmark {
+
+	private static final int ELEMENTS = 1_000;
+
+	@Param({ "0", "1", "50" })
+	public int sourceLatencyMicros;
+
+	@Param({ "unbounded", "bounded", "chunked" })
+	public String cache;
+
+	@Benchmark
+	public void direct(Blackhole bh) {
+		source().forEach(bh::consume);
+	}
+
+	@Benchmark
+	public void buffered(Blackhole bh) {
+		try (Stream<Integer> stream = buffer(source())) {
+			stream.forEach(bh::consume);
+		}
+	}
+
+	private Stream<Integer> buffer(Stream<Integer> source) {
+		return switch (cache) {
+			case "bounded" -> Streams.buffered(source, 64);
+			case "chunked" -> Streams.buffered(source, 1024, 64);
+			default -> Streams.buffered(source);
+		};
+	}
+
+	private Stream<Integer> source() {
+		final long latency = TimeUnit.MICROSECONDS.toNanos(sourceLatencyMicros);
+		return IntStream.range(0, ELEMENTS).boxed().peek(i -> {
+			if (latency > 0) {
+				LockSupport.parkNanos(latency);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.xomda.common.util.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Concatenates a growing number of small streams, and drains the result.
+ * The streams are created as part of every invocation, since a stream can only be consumed once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcatBenchmark {
+
+	private static final int ELEMENTS_PER_STREAM = 10;
+
+	@Param({ "2", "10", "100", "1000", "10000" })
+	public int streams;
+
+	@Benchmark
+	public void concat(Blackhole bh) {
+		Streams.concat(streams()).forEach(bh::consume);
+	}
+
+	/**
+	 * The baseline, which doesn't nest the streams at all.
+	 */
+	@Benchmark
+	public void flatMap(Blackhole bh) {
+		Stream.of(streams()).flatMap(s -> s).forEach(bh::consume);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Stream<Integer>[] streams() {
+		final Stream<Integer>[] result = new Stream[streams];
+		for (int i = 0; i < streams; i++) {
+			result[i] = IntStream.range(0, ELEMENTS_PER_STREAM).boxed();
+		}
+		return result;
+	}
+
+}
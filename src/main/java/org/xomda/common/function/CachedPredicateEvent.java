@@ -0,0 +1,48 @@
+package org.xomda.common.function;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a test of a {@link Predicates#cached(java.util.function.Predicate) cached predicate}.
+ * The duration of a miss includes the evaluation of the predicate itself.
+ * <p>
+ * Cached predicates are typically tested very often, so the event has to be enabled explicitly.
+ * Whether it's enabled is asked of a single event, which follows the settings of the running recordings,
+ * so a test doesn't have to create an event at all while it isn't.
+ */
+@Name("org.xomda.common.function.CachedPredicate")
+@Label("Cached Predicate")
+@Description("A test of a cached predicate, which is either a hit, or a miss which evaluates the predicate")
+@Category({ "XOMDA", "Predicates" })
+@Enabled(false)
+@StackTrace(false)
+final class CachedPredicateEvent extends Event {
+
+	// never committed, only asked whether the event is enabled
+	private static final CachedPredicateEvent PROBE = new CachedPredicateEvent();
+
+	@Label("Predicate")
+	@Description("The class name of the predicate which is cached")
+	String predicate;
+
+	@Label("Hit")
+	@Description("Whether the outcome was found in the cache")
+	boolean hit;
+
+	@Label("Result")
+	boolean result;
+
+	/**
+	 * @return whether the event is enabled in any of the running recordings
+	 */
+	static boolean enabled() {
+		return PROBE.isEnabled();
+	}
+
+}
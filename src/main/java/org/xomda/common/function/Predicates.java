@@ -16,6 +16,9 @@ public final class Predicates {
 	private static final Predicate<?> ALWAYS_TRUE = always(true);
 	private static final Predicate<?> ALWAYS_FALSE = always(false);
 
+	// whether the runtime has Flight Recorder, which is an optional module
+	private static final boolean RECORDING = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
 	public static <T> Predicate<T> always(final boolean result) {
 		return (final T value) -> result;
 	}
@@ -123,13 +126,42 @@ public final class Predicates {
 	 * Cache the outcome of a {@link Predicate} so it doesn't need to be evaluated all the time.
 	 * The provided cacheSupplier is used to create the cache, such that the user has freedom into
 	 * which implementation is used. By default, a {@link DefaultPredicateCache} will be used for cache.
+	 * <p>
+	 * Every test can be recorded as a {@link CachedPredicateEvent Flight Recorder event}, which is disabled by default.
+	 * As long as it isn't enabled, or the runtime doesn't have the jdk.jfr module, a test is just a lookup in the cache.
 	 */
 	public static <T> Predicate<T> cached(Predicate<T> predicate, Supplier<Map<T, Boolean>> cacheSupplier) {
 		Map<T, Boolean> cache = cacheSupplier.get();
 		AtomicReference<Boolean> nullValue = new AtomicReference<>(null);
-		return (T value) -> null == value
-				? nullValue.updateAndGet(b -> null != b ? b : predicate.test(value))
-				: cache.computeIfAbsent(value, k -> predicate.test(value));
+		return (T value) -> {
+			if (RECORDING && CachedPredicateEvent.enabled()) {
+				return recorded(predicate, cache, nullValue, value);
+			}
+			return null == value
+					? nullValue.updateAndGet(b -> null != b ? b : predicate.test(value))
+					: cache.computeIfAbsent(value, k -> predicate.test(value));
+		};
+	}
+
+	// the test of a cached predicate, while its event is enabled
+	private static <T> boolean recorded(Predicate<T> predicate, Map<T, Boolean> cache, AtomicReference<Boolean> nullValue, T value) {
+		final CachedPredicateEvent event = new CachedPredicateEvent();
+		event.begin();
+		event.hit = true;
+		final Predicate<T> evaluate = (T v) -> {
+			event.hit = false;
+			return predicate.test(v);
+		};
+		final boolean result = null == value
+				? nullValue.updateAndGet(b -> null != b ? b : evaluate.test(value))
+				: cache.computeIfAbsent(value, k -> evaluate.test(value));
+		event.end();
+		if (event.shouldCommit()) {
+			event.predicate = predicate.getClass().getName();
+			event.result = result;
+			event.commit();
+		}
+		return result;
 	}
 
 	/**
@@ -0,0 +1,27 @@
+package org.xomda.common.reflect;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for a lookup by {@link Reflect#findInvoker(Class, String, Class[])}.
+ */
+@Name("org.xomda.common.reflect.FindInvoker")
+@Label("Find Invoker")
+@Description("A reflective lookup of a method to invoke")
+@Category({ "XOMDA", "Reflection" })
+final class FindInvokerEvent extends Event {
+
+	@Label("Class")
+	Class<?> type;
+
+	@Label("Method")
+	String method;
+
+	@Label("Found")
+	boolean found;
+
+}
@@ -0,0 +1,31 @@
+package org.xomda.common.reflect;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for an invocation through an {@link Reflect.Invoker invoker}.
+ * Only the invocations which take longer than the threshold are recorded by default.
+ */
+@Name("org.xomda.common.reflect.Invoke")
+@Label("Invoke")
+@Description("A reflective invocation of a method, through an invoker")
+@Category({ "XOMDA", "Reflection" })
+@Threshold("1 ms")
+final class InvokeEvent extends Event {
+
+	@Label("Class")
+	Class<?> type;
+
+	@Label("Method")
+	String method;
+
+	@Label("Failed")
+	@Description("Whether the invocation has thrown an exception")
+	boolean failed;
+
+}
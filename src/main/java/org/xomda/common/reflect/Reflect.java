@@ -15,6 +15,9 @@ import org.xomda.common.exception.SneakyThrow;
  */
 public final class Reflect {
 
+	// lookups and invocations are only recorded when the runtime has the optional jdk.jfr module
+	private static final boolean RECORDING = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
 	/**
 	 * Unchecked cast without warning.
 	 */
@@ -96,20 +99,61 @@ public final class Reflect {
 
 	/**
 	 * Find a method in given class with a given name and arguments.
+	 * Both the lookup and the invocations are recorded as Flight Recorder events, when the runtime has Flight Recorder.
 	 */
 	public static Optional<Invoker> findInvoker(final Class<?> clazz, final String name, Class<?>... args) {
-		return findMethod(clazz, name, args)
-				.map((Method method) -> new Invoker() {
-					@Override
-					public <T, E extends Throwable> T invoke(Object subject, final Object... args) throws E {
-						try {
-							return unchecked(method.invoke(subject, args));
-						} catch (Exception e) {
-							SneakyThrow.throwSneaky(e);
-						}
-						return null;
+		if (!RECORDING) {
+			return findMethod(clazz, name, args).map(Reflect::invoker);
+		}
+		final FindInvokerEvent lookup = new FindInvokerEvent();
+		lookup.begin();
+		final Optional<Method> found = findMethod(clazz, name, args);
+		lookup.end();
+		if (lookup.shouldCommit()) {
+			lookup.type = clazz;
+			lookup.method = name;
+			lookup.found = found.isPresent();
+			lookup.commit();
+		}
+		return found.map(Reflect::recordedInvoker);
+	}
+
+	private static Invoker invoker(final Method method) {
+		return new Invoker() {
+			@Override
+			public <T, E extends Throwable> T invoke(Object subject, final Object... args) throws E {
+				try {
+					return unchecked(method.invoke(subject, args));
+				} catch (Exception e) {
+					SneakyThrow.throwSneaky(e);
+				}
+				return null;
+			}
+		};
+	}
+
+	private static Invoker recordedInvoker(final Method method) {
+		return new Invoker() {
+			@Override
+			public <T, E extends Throwable> T invoke(Object subject, final Object... args) throws E {
+				final InvokeEvent event = new InvokeEvent();
+				event.begin();
+				try {
+					return unchecked(method.invoke(subject, args));
+				} catch (Exception e) {
+					event.failed = true;
+					SneakyThrow.throwSneaky(e);
+				} finally {
+					event.end();
+					if (event.shouldCommit()) {
+						event.type = method.getDeclaringClass();
+						event.method = method.getName();
+						event.commit();
 					}
-				});
+				}
+				return null;
+			}
+		};
 	}
 
 	private Reflect() {
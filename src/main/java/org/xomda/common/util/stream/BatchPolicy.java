@@ -0,0 +1,82 @@
+package org.xomda.common.util.stream;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decides how many elements of an {@link Iterator iterator} are taken out at once,
+ * when a parallel {@link java.util.stream.Stream stream} over it is split.
+ * Every batch is copied into an array, which is handed to one of the fork-join workers,
+ * while the iterator itself can only be walked through by one thread at a time.
+ *
+ * @see Streams#stream(Iterator, long, BatchPolicy, boolean)
+ */
+@FunctionalInterface
+public interface BatchPolicy {
+
+	/**
+	 * The largest batch which is ever taken out of an iterator.
+	 */
+	int MAX_BATCH_SIZE = 1 << 25;
+
+	/**
+	 * @param previous the size of the previous batch, or 0 for the first batch
+	 * @param remaining the estimated number of remaining elements, or {@link Long#MAX_VALUE} when it's not known
+	 * @param nanosPerElement the average time it took to consume an element of the previous batches,
+	 *                        or -1 when that hasn't been measured yet
+	 * @return the size of the next batch, which is kept between 1 and {@link #MAX_BATCH_SIZE}
+	 */
+	int nextBatchSize(int previous, long remaining, long nanosPerElement);
+
+	/**
+	 * Takes out batches of the same size every time.
+	 */
+	static BatchPolicy fixed(final int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("A batch size below 1 does not make sense");
+		}
+		return (previous, remaining, nanosPerElement) -> size;
+	}
+
+	/**
+	 * Takes out batches which grow by 1024 elements every time,
+	 * like the spliterators of {@link java.util.Spliterators#spliteratorUnknownSize(Iterator, int) Spliterators} do.
+	 */
+	static BatchPolicy growing() {
+		return (previous, remaining, nanosPerElement) -> previous + 1024;
+	}
+
+	/**
+	 * Takes out batches which take about one millisecond to consume.
+	 *
+	 * @see #adaptive(Duration)
+	 */
+	static BatchPolicy adaptive() {
+		return adaptive(Duration.ofMillis(1));
+	}
+
+	/**
+	 * Takes out batches which take about the given time to consume,
+	 * based on the time the previous batches took, so expensive elements are spread over more batches than cheap ones.
+	 * Until that has been measured, the batches start small, and double every time.
+	 * When the number of elements is known, the remaining elements are divided over at least all workers of the fork-join pool.
+	 */
+	static BatchPolicy adaptive(final Duration target) {
+		final long targetNanos = Math.max(1L, target.toNanos());
+		return (previous, remaining, nanosPerElement) -> {
+			long size = nanosPerElement < 0
+					? Math.max(16L, 2L * previous)
+					: targetNanos / Math.max(1L, nanosPerElement);
+			if (remaining != Long.MAX_VALUE) {
+				final int parallelism = ForkJoinTask.inForkJoinPool()
+						? ForkJoinTask.getPool().getParallelism()
+						: ForkJoinPool.getCommonPoolParallelism();
+				size = Math.min(size, (remaining + parallelism - 1) / parallelism);
+			}
+			return (int) Math.max(1L, Math.min(size, MAX_BATCH_SIZE));
+		};
+	}
+
+}
@@ -0,0 +1,167 @@
+package org.xomda.common.util.stream;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator spliterator} over an {@link Iterator iterator}, which splits off array batches,
+ * of which the size is decided by a {@link BatchPolicy batch policy}.
+ * <p>
+ * The batches measure how long it takes to consume their elements,
+ * so the policy can base the size of the next batch on the cost per element.
+ */
+final class BatchSpliterator<T> implements Spliterator<T> {
+
+	private final Iterator<? extends T> iterator;
+	private final BatchPolicy policy;
+	private final int characteristics;
+
+	// the time it took to consume the elements of the batches, shared by all of them
+	private final LongAdder nanos = new LongAdder();
+	private final LongAdder consumed = new LongAdder();
+
+	private long remaining;
+	private int batch;
+
+	/**
+	 * @param size the estimated number of elements, or {@link Long#MAX_VALUE} when it's not known
+	 */
+	BatchSpliterator(final Iterator<? extends T> iterator, final long size, final BatchPolicy policy, final int characteristics) {
+		if (size < 0) {
+			throw new IllegalArgumentException("A negative size does not make sense");
+		}
+		this.iterator = Objects.requireNonNull(iterator);
+		this.policy = Objects.requireNonNull(policy);
+		this.remaining = size;
+		this.characteristics = characteristics & ~(SIZED | SUBSIZED);
+	}
+
+	private long nanosPerElement() {
+		final long count = consumed.sum();
+		return count == 0 ? -1L : nanos.sum() / count;
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		long size = policy.nextBatchSize(batch, remaining, nanosPerElement());
+		size = Math.max(1L, Math.min(size, Math.min(remaining, BatchPolicy.MAX_BATCH_SIZE)));
+		final Object[] elements = new Object[(int) size];
+		int count = 0;
+		do {
+			elements[count] = iterator.next();
+		} while (++count < size && iterator.hasNext());
+		batch = count;
+		if (!iterator.hasNext()) {
+			remaining = 0L;
+		} else if (remaining != Long.MAX_VALUE) {
+			// when the estimate turns out to be too low, the size is no longer known
+			remaining = remaining > count ? remaining - count : Long.MAX_VALUE;
+		}
+		return new Batch<>(elements, 0, count, characteristics | SIZED | SUBSIZED, this);
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super T> action) {
+		if (!iterator.hasNext()) {
+			return false;
+		}
+		final T value = iterator.next();
+		if (remaining != Long.MAX_VALUE && remaining > 0) {
+			remaining--;
+		}
+		action.accept(value);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super T> action) {
+		iterator.forEachRemaining(action);
+		if (remaining != Long.MAX_VALUE) {
+			remaining = 0L;
+		}
+	}
+
+	@Override
+	public long estimateSize() {
+		return remaining;
+	}
+
+	@Override
+	public int characteristics() {
+		return characteristics;
+	}
+
+	/**
+	 * One batch of elements, which reports the time it took to consume them back to the spliterator it was split off.
+	 */
+	private static final class Batch<T> implements Spliterator<T> {
+
+		private final Object[] elements;
+		private final int characteristics;
+		private final BatchSpliterator<?> source;
+
+		private int index;
+		private final int end;
+
+		Batch(final Object[] elements, final int index, final int end, final int characteristics, final BatchSpliterator<?> source) {
+			this.elements = elements;
+			this.index = index;
+			this.end = end;
+			this.characteristics = characteristics;
+			this.source = source;
+		}
+
+		@SuppressWarnings("unchecked")
+		private T get(final int i) {
+			return (T) elements[i];
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super T> action) {
+			if (index >= end) {
+				return false;
+			}
+			action.accept(get(index++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(final Consumer<? super T> action) {
+			final int from = index;
+			final long start = System.nanoTime();
+			for (; index < end; index++) {
+				action.accept(get(index));
+			}
+			source.nanos.add(System.nanoTime() - start);
+			source.consumed.add(end - from);
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int mid = (index + end) >>> 1;
+			if (mid <= index) {
+				return null;
+			}
+			final Spliterator<T> prefix = new Batch<>(elements, index, mid, characteristics, source);
+			index = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return end - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return characteristics;
+		}
+	}
+
+}
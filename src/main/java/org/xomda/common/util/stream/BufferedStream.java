@@ -1,13 +1,24 @@
 package org.xomda.common.util.stream;
 
-import static org.xomda.common.exception.SneakyThrow.throwSneaky;
-
+import java.lang.ref.Cleaner;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -24,7 +35,10 @@ public class BufferedStream<T> extends DelegateStream<T> {
 
 	/**
 	 * A Cache which will block pushing to it, until there is room again.
+	 *
+	 * @deprecated busy-waits while the cache is full, use {@link ParkingCache} instead.
 	 */
+	@Deprecated
 	public static class LimitedBlockingCache<T> extends DefaultCache<T> {
 
 		public final static int DEFAULT_SIZE = 1024;
@@ -51,114 +65,909 @@ public class BufferedStream<T> extends DelegateStream<T> {
 		}
 	}
 
-	private static class InnerThread extends Thread {
+	/**
+	 * A Cache which will block pushing to it, until there is room again.
+	 * Instead of busy-waiting, the pushing thread spins for a short while and then parks,
+	 * until an element is taken out of it again.
+	 * <p>
+	 * The cache is meant to be filled by {@link #push(Object)} and drained by {@link #pollLast()},
+	 * by a single producer and a single consumer.
+	 * All other operations of a deque keep track of its size as well, but only the ones which add an element wait for room.
+	 * Removing an element through an iterator removes the first (or for a descending iterator, the last) occurrence of it.
+	 */
+	public static class ParkingCache<T> extends AbstractCollection<T> implements Deque<T> {
+
+		public final static int DEFAULT_SIZE = 1024;
+
+		// wrapped instead of extended, so every change of the deque passes through here and is counted
+		private final Deque<T> deque = new ConcurrentLinkedDeque<>();
+		private final int limit;
+		private final AtomicInteger size = new AtomicInteger();
+		private final Signal notFull = new Signal(Signal.PRODUCER, this);
+		private final BooleanSupplier hasRoom = this::hasRoom;
+
+		ParkingCache() {
+			this(DEFAULT_SIZE);
+		}
+
+		ParkingCache(int limit) {
+			if (limit < 1) {
+				throw new IllegalArgumentException("A maximum size below 1 does not make sense");
+			}
+			this.limit = limit;
+		}
+
+		private boolean hasRoom() {
+			return size.get() < limit;
+		}
+
+		private T removed(final T t) {
+			if (null != t) {
+				size.decrementAndGet();
+				notFull.signal();
+			}
+			return t;
+		}
+
+		private boolean removed(final boolean removed) {
+			if (removed) {
+				size.decrementAndGet();
+				notFull.signal();
+			}
+			return removed;
+		}
+
+		@Override
+		public void addFirst(final T t) {
+			Objects.requireNonNull(t);
+			notFull.await(hasRoom);
+			deque.addFirst(t);
+			size.incrementAndGet();
+		}
+
+		@Override
+		public void addLast(final T t) {
+			Objects.requireNonNull(t);
+			notFull.await(hasRoom);
+			deque.addLast(t);
+			size.incrementAndGet();
+		}
+
+		@Override
+		public boolean offerFirst(final T t) {
+			addFirst(t);
+			return true;
+		}
+
+		@Override
+		public boolean offerLast(final T t) {
+			addLast(t);
+			return true;
+		}
+
+		@Override
+		public void push(final T t) {
+			addFirst(t);
+		}
+
+		@Override
+		public boolean add(final T t) {
+			addLast(t);
+			return true;
+		}
+
+		@Override
+		public boolean offer(final T t) {
+			return offerLast(t);
+		}
+
+		@Override
+		public T pollFirst() {
+			return removed(deque.pollFirst());
+		}
+
+		@Override
+		public T pollLast() {
+			return removed(deque.pollLast());
+		}
+
+		@Override
+		public T poll() {
+			return pollFirst();
+		}
+
+		@Override
+		public T removeFirst() {
+			final T t = pollFirst();
+			if (null == t) {
+				throw new NoSuchElementException();
+			}
+			return t;
+		}
+
+		@Override
+		public T removeLast() {
+			final T t = pollLast();
+			if (null == t) {
+				throw new NoSuchElementException();
+			}
+			return t;
+		}
+
+		@Override
+		public T remove() {
+			return removeFirst();
+		}
+
+		@Override
+		public T pop() {
+			return removeFirst();
+		}
+
+		@Override
+		public boolean removeFirstOccurrence(final Object o) {
+			return removed(deque.removeFirstOccurrence(o));
+		}
+
+		@Override
+		public boolean removeLastOccurrence(final Object o) {
+			return removed(deque.removeLastOccurrence(o));
+		}
+
+		@Override
+		public boolean remove(final Object o) {
+			return removeFirstOccurrence(o);
+		}
+
+		@Override
+		public void clear() {
+			while (null != pollFirst()) {
+				// keep removing
+			}
+		}
+
+		@Override
+		public T peekFirst() {
+			return deque.peekFirst();
+		}
+
+		@Override
+		public T peekLast() {
+			return deque.peekLast();
+		}
+
+		@Override
+		public T peek() {
+			return deque.peek();
+		}
+
+		@Override
+		public T getFirst() {
+			return deque.getFirst();
+		}
+
+		@Override
+		public T getLast() {
+			return deque.getLast();
+		}
+
+		@Override
+		public T element() {
+			return deque.element();
+		}
+
+		@Override
+		public boolean contains(final Object o) {
+			return deque.contains(o);
+		}
+
+		@Override
+		public int size() {
+			return size.get();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return deque.isEmpty();
+		}
+
+		@Override
+		public Object[] toArray() {
+			return deque.toArray();
+		}
+
+		@Override
+		public <A> A[] toArray(final A[] a) {
+			return deque.toArray(a);
+		}
+
+		/**
+		 * The bulk operations, like {@link #removeIf(Predicate)}, remove their elements through this iterator as well.
+		 */
+		@Override
+		public java.util.Iterator<T> iterator() {
+			return removing(deque.iterator(), this::removeFirstOccurrence);
+		}
+
+		@Override
+		public java.util.Iterator<T> descendingIterator() {
+			return removing(deque.descendingIterator(), this::removeLastOccurrence);
+		}
+
+		private static <T> java.util.Iterator<T> removing(final java.util.Iterator<T> iterator, final Predicate<Object> remove) {
+			return new java.util.Iterator<>() {
+				private T last;
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public T next() {
+					return last = iterator.next();
+				}
+
+				@Override
+				public void remove() {
+					if (null == last) {
+						throw new IllegalStateException();
+					}
+					remove.test(last);
+					last = null;
+				}
+			};
+		}
+	}
+
+	/**
+	 * The storage in between the producer and the consumer of a BufferedStream.
+	 * Elements are {@link #put(Object) put} by a single producer and {@link #poll() polled} by a single consumer, in FIFO order.
+	 * <p>
+	 * In contrast to a {@link Deque deque}, a cache only needs to support the operations the BufferedStream actually uses,
+	 * and it may rely on the fact that there's never more than one producer and one consumer at a time.
+	 * An instance of a cache serves only one BufferedStream.
+	 *
+	 * @see RingBufferCache
+	 */
+	public interface Cache<T> {
 
-		private volatile boolean started;
+		/**
+		 * Adds an element to the cache, possibly blocking the producer until there is room.
+		 */
+		void put(T value);
 
-		InnerThread(Runnable runnable) {
-			super(runnable);
+		/**
+		 * Makes the elements which have been put, but which are still held back by the producer, available to the consumer.
+		 * <p>
+		 * The producer flushes when it notices that the consumer is waiting, but the consumer might start waiting right after that,
+		 * while the producer waits for its input stream. So a cache which holds elements back has to hand them over by itself as well,
+		 * as soon as the consumer finds it {@link #isEmpty() empty}.
+		 */
+		default void flush() {
+		}
+
+		/**
+		 * @return the next element, or <code>null</code> when there is none available (yet)
+		 */
+		T poll();
+
+		/**
+		 * @return whether there are no elements available to the consumer
+		 */
+		boolean isEmpty();
+
+		/**
+		 * Releases whatever the cache holds on to, once the BufferedStream is closed or cancelled.
+		 * The producer might still put elements afterwards, which the cache is free to discard.
+		 */
+		default void close() {
+		}
+
+	}
+
+	/**
+	 * Turns a {@link Deque deque} into a {@link Cache}, pushing to the head and polling from the tail.
+	 */
+	private static class DequeCache<T> implements Cache<T> {
+
+		private final Deque<T> deque;
+
+		DequeCache(Deque<T> deque) {
+			this.deque = Objects.requireNonNull(deque);
+		}
+
+		@Override
+		public void put(T value) {
+			deque.push(value);
 		}
 
 		@Override
-		public synchronized void start() {
-			started = true;
-			super.start();
+		public T poll() {
+			return deque.pollLast();
 		}
 
+		@Override
+		public boolean isEmpty() {
+			return deque.isEmpty();
+		}
 	}
 
 	/**
 	 * Iterator using a FIFO queue for polling elements
+	 * <p>
+	 * When the producer fails, the consumer first gets the elements which have been buffered before,
+	 * and then the exception of the producer is rethrown to the consumer.
+	 * When the consumer is no longer interested, it can {@link #cancel() cancel} the producer.
 	 */
-	public static class Iterator<T> implements java.util.Iterator<T> {
+	public static class Iterator<T> extends Producer implements java.util.Iterator<T> {
+
+		private final Stream<T> stream;
+
+		// pushes all elements of the input stream
+		private final Runnable drain;
 
-		private final InnerThread thread;
+		private final Cache<T> cache;
 
-		private final Deque<T> queue;
+		// wakes up the consumer when an element was added or the input stream is finished
+		private final Signal available;
+		private final BooleanSupplier isAvailable = this::isAvailable;
 
-		// the input stream is finished
-		private volatile boolean done;
+		// what is known about the input stream, passed on by the spliterator
+		private final int characteristics;
+		private final long size;
+		private final Comparator<? super T> comparator;
+
+		// the number of elements handed to the consumer, and how many it needs at most, only touched by the consumer
+		private long consumed;
+		private long limit = Long.MAX_VALUE;
+
+		// null unless the BufferedStreamMonitor was enabled when the iterator was created
+		private final BufferedStreamStats stats;
 
 		public Iterator(Stream<T> stream) {
 			this(stream, DefaultCache::new);
 		}
 
 		public Iterator(Stream<T> stream, Supplier<Deque<T>> dequeSupplier) {
-			this.queue = dequeSupplier.get();
-			thread = new InnerThread(() -> {
-				try (stream) {
-					stream.forEach(queue::push);
-					done = true;
+			this(stream, dequeSupplier, ProducerThreads.threadPerTask());
+		}
+
+		/**
+		 * Creates an Iterator which consumes the given {@link Stream stream} as a task on the given {@link Executor executor}.
+		 */
+		public Iterator(Stream<T> stream, Supplier<Deque<T>> dequeSupplier, Executor executor) {
+			this(stream, new DequeCache<>(dequeSupplier.get()), executor);
+		}
+
+		/**
+		 * Creates an Iterator which uses the given {@link Cache cache},
+		 * and consumes the given {@link Stream stream} as a task on the given {@link Executor executor}.
+		 */
+		public Iterator(Stream<T> stream, Cache<T> cache, Executor executor) {
+			super(executor);
+			this.stream = Objects.requireNonNull(stream);
+			this.cache = Objects.requireNonNull(cache);
+			this.available = new Signal(Signal.CONSUMER, cache);
+			this.stats = BufferedStreamMonitor.register(cache);
+			// a sequential stream is drained through its spliterator, which tells what to expect of the stream.
+			// a parallel stream is drained with forEachOrdered, so it never pushes from multiple threads at once
+			final Spliterator<T> source = stream.isParallel() ? null : stream.spliterator();
+			if (null == source) {
+				this.characteristics = 0;
+				this.size = Long.MAX_VALUE;
+				this.comparator = null;
+			} else {
+				this.characteristics = source.characteristics() & (Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.SORTED);
+				this.size = source.estimateSize();
+				this.comparator = source.hasCharacteristics(Spliterator.SORTED) ? source.getComparator() : null;
+			}
+			this.drain = null == source
+					? () -> stream.forEachOrdered(this::push)
+					: () -> source.forEachRemaining(this::push);
+		}
+
+		@Override
+		void start(final Executor executor) {
+			executor.execute(() -> {
+				if (null != stats) {
+					stats.producerStarted();
 				}
+				produce(stream, drain);
 			});
-			thread.setUncaughtExceptionHandler((t, e) -> throwSneaky(e));
+		}
+
+		@Override
+		void finished() {
+			try {
+				// when cancelled, this lets the cache discard what it still holds back
+				cache.flush();
+			} finally {
+				if (null != stats) {
+					stats.producerFinished();
+				}
+				super.finished();
+			}
+		}
+
+		@Override
+		void closeInput() {
+			try (stream) {
+				cache.close();
+			}
+		}
+
+		@Override
+		void unblock() {
+			cache.close();
+			while (null != cache.poll()) {
+				// drop the elements, to make room for a producer which is blocked on a full cache
+			}
+		}
+
+		@Override
+		void signalDone() {
+			available.signal();
+		}
+
+		private void push(final T t) {
+			checkCancelled();
+			if (null == stats) {
+				cache.put(t);
+			} else {
+				final long start = System.nanoTime();
+				cache.put(t);
+				stats.produced(System.nanoTime() - start);
+			}
+			// only hand over held back elements when the consumer is actually waiting for them,
+			// the put has published the element before, so either the consumer sees it, or this sees the consumer
+			if (available.hasWaiter()) {
+				cache.flush();
+				available.signal();
+			}
 		}
 
 		private void waitFor() {
-			while (!done && queue.isEmpty())
-				;
+			if (null == stats || isAvailable()) {
+				available.await(isAvailable);
+			} else {
+				final long start = System.nanoTime();
+				available.await(isAvailable);
+				stats.consumerStalled(System.nanoTime() - start);
+			}
 		}
 
-		private void startIfNeeded() {
-			if (thread.started) {
-				return;
+		/**
+		 * @return false when the deadline has passed before anything became available
+		 */
+		private boolean waitFor(final long deadline) {
+			if (null == stats || isAvailable()) {
+				return available.await(isAvailable, deadline);
 			}
-			synchronized (this) {
-				if (!thread.started) {
-					thread.start();
-				}
+			final long start = System.nanoTime();
+			final boolean result = available.await(isAvailable, deadline);
+			stats.consumerStalled(System.nanoTime() - start);
+			return result;
+		}
+
+		private boolean isAvailable() {
+			return isDone() || isCancelled() || !cache.isEmpty();
+		}
+
+		private T poll() {
+			return isCancelled() ? null : cache.poll();
+		}
+
+		private boolean hasMore() {
+			// only the consumer removes elements, so an empty cache means the input stream is done
+			return !isCancelled() && !cache.isEmpty();
+		}
+
+		/**
+		 * Stops the monitoring, and rethrows the failure of the producer, once the consumer has run out of elements.
+		 */
+		private void exhausted() {
+			BufferedStreamMonitor.unregister(stats);
+			rethrowFailure();
+		}
+
+		private void consumed(final long count) {
+			consumed += count;
+			if (null != stats) {
+				stats.consumed(count);
+			}
+			if (consumed >= limit) {
+				cancel();
+			}
+		}
+
+		/**
+		 * Stops the producer, which closes the input stream as soon as it gets to push its next element.
+		 * A producer which is waiting for room in the cache is woken up, as the elements in the cache are dropped.
+		 * When the producer hasn't been started yet, the input stream is closed right away.
+		 * <p>
+		 * From then on, the iterator has no more elements.
+		 */
+		@Override
+		public void cancel() {
+			try {
+				super.cancel();
+			} finally {
+				BufferedStreamMonitor.unregister(stats);
+			}
+		}
+
+		/**
+		 * @return the statistics which are kept by the {@link BufferedStreamMonitor}, or null when monitoring was disabled
+		 */
+		public BufferedStreamStats getStats() {
+			return stats;
+		}
+
+		/**
+		 * The consumer doesn't need more than the given number of elements, so the producer can be cancelled after that.
+		 */
+		void limit(final long maxSize) {
+			limit = maxSize;
+			if (consumed >= limit) {
+				cancel();
 			}
 		}
 
 		@Override
 		public boolean hasNext() {
 			startIfNeeded();
-			if (done && queue.isEmpty()) {
-				return false;
-			}
 			waitFor();
-			return !queue.isEmpty() || !done;
+			if (hasMore()) {
+				return true;
+			}
+			exhausted();
+			return false;
 		}
 
 		@Override
 		public T next() {
+			startIfNeeded();
 			waitFor();
-			if (queue.isEmpty()) {
+			final T t = poll();
+			if (null == t) {
+				exhausted();
 				throw new NoSuchElementException();
 			}
-			return queue.pollLast();
+			consumed(1);
+			return t;
 		}
 
+		/**
+		 * Drains the cache in bulk, and only waits when the cache has run empty.
+		 */
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			startIfNeeded();
+			do {
+				for (T t; null != (t = poll()); ) {
+					action.accept(t);
+					consumed(1);
+				}
+				waitFor();
+			} while (hasMore());
+			exhausted();
+		}
+
+		/**
+		 * Hands the next element over to the given action, waiting for it only when the cache is empty.
+		 *
+		 * @return false when the input stream is done and all of its elements have been consumed
+		 */
+		boolean tryAdvance(Consumer<? super T> action) {
+			startIfNeeded();
+			T t = poll();
+			if (null == t) {
+				waitFor();
+				if (null == (t = poll())) {
+					exhausted();
+					return false;
+				}
+			}
+			action.accept(t);
+			consumed(1);
+			return true;
+		}
+
+		/**
+		 * Hands the next element over to the given action, waiting for it until the given deadline when the cache is empty.
+		 * The failure of the producer is not rethrown here, but by the next call to {@link #tryAdvance(Consumer)}.
+		 *
+		 * @param deadline the time to give up, in terms of {@link System#nanoTime()}
+		 * @return false when the deadline has passed, or when the input stream is done and all of its elements have been consumed
+		 */
+		boolean tryAdvance(Consumer<? super T> action, long deadline) {
+			startIfNeeded();
+			T t = poll();
+			if (null == t) {
+				if (!waitFor(deadline) || null == (t = poll())) {
+					return false;
+				}
+			}
+			action.accept(t);
+			consumed(1);
+			return true;
+		}
+
+		/**
+		 * Moves up to the given number of elements, which are already in the cache, into an array spliterator.
+		 * Only waits when the cache is empty, until there's at least one element.
+		 *
+		 * @return null when the input stream is done and all of its elements have been consumed
+		 */
+		Spliterator<T> trySplit(int batchSize) {
+			startIfNeeded();
+			T t = poll();
+			if (null == t) {
+				waitFor();
+				if (null == (t = poll())) {
+					exhausted();
+					return null;
+				}
+			}
+			final int max = (int) Math.min(batchSize, limit - consumed);
+			final Object[] batch = new Object[max];
+			int n = 0;
+			do {
+				batch[n++] = t;
+			} while (n < max && null != (t = poll()));
+			consumed(n);
+			return Spliterators.spliterator(batch, 0, n, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		private long estimateSize() {
+			return (characteristics & Spliterator.SIZED) == 0 ? size : Math.max(0L, size - consumed);
+		}
+
+		/**
+		 * @return a stream of the remaining elements, which cancels the producer when it's closed,
+		 * or when it's no longer reachable without having been closed
+		 */
 		public Stream<T> stream() {
-			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+			final BufferedSpliterator<T> spliterator = new BufferedSpliterator<>(this);
+			final Cleaner.Cleanable cleanable = CLEANER.register(spliterator, this::cancel);
+			return StreamSupport.stream(spliterator, false).onClose(cleanable::clean);
+		}
+
+		/**
+		 * @return a stream of the remaining elements in batches of at most the given size,
+		 * of which every batch is served at the latest when the given time has passed since its first element was taken.
+		 * It cancels the producer when it's closed, or when it's no longer reachable without having been closed.
+		 */
+		Stream<List<T>> batched(final int maxSize, final long maxLingerNanos) {
+			final BatchingSpliterator<T> spliterator = new BatchingSpliterator<>(this, maxSize, maxLingerNanos);
+			final Cleaner.Cleanable cleanable = CLEANER.register(spliterator, this::cancel);
+			return StreamSupport.stream(spliterator, false).onClose(cleanable::clean);
+		}
+
+	}
+
+	/**
+	 * A {@link Spliterator spliterator} which drains the {@link Iterator iterator} directly,
+	 * and which passes on the characteristics and the size of the input stream.
+	 * Elements are always {@link #ORDERED} and {@link #NONNULL}, as they are served in the order they have been put into the cache.
+	 * <p>
+	 * When used in parallel, it splits off the elements which are already in the cache, in batches of growing size,
+	 * while the producer keeps on filling the cache. So the workers of a parallel stream only ever wait for
+	 * the producer when the cache has run empty.
+	 */
+	private static class BufferedSpliterator<T> implements Spliterator<T> {
+
+		private final static int MIN_BATCH = 1 << 4;
+		private final static int MAX_BATCH = 1 << 12;
+
+		private final Iterator<T> iterator;
+
+		private int batchSize = MIN_BATCH;
+
+		BufferedSpliterator(Iterator<T> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			return iterator.tryAdvance(action);
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			iterator.forEachRemaining(action);
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final Spliterator<T> batch = iterator.trySplit(batchSize);
+			batchSize = Math.min(MAX_BATCH, batchSize << 1);
+			return batch;
+		}
+
+		@Override
+		public long estimateSize() {
+			return iterator.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return iterator.characteristics | ORDERED | NONNULL;
+		}
+
+		@Override
+		public Comparator<? super T> getComparator() {
+			if (hasCharacteristics(SORTED)) {
+				return iterator.comparator;
+			}
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * A {@link Spliterator spliterator} which drains the {@link Iterator iterator} in batches,
+	 * which are served as soon as they're full, or as soon as the maximum time has passed since their first element was taken,
+	 * whichever comes first. So under load the batches are full, while a slow input stream still gets its elements served in time.
+	 */
+	private static class BatchingSpliterator<T> implements Spliterator<List<T>> {
+
+		private final Iterator<T> iterator;
+		private final int maxSize;
+		private final long maxLingerNanos;
+
+		BatchingSpliterator(Iterator<T> iterator, int maxSize, long maxLingerNanos) {
+			this.iterator = iterator;
+			this.maxSize = maxSize;
+			this.maxLingerNanos = maxLingerNanos;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super List<T>> action) {
+			final List<T> batch = new ArrayList<>(Math.min(maxSize, RingBufferCache.DEFAULT_SIZE));
+			// waits as long as it takes for the first element, and only lingers for the rest
+			if (!iterator.tryAdvance(batch::add)) {
+				return false;
+			}
+			final long deadline = System.nanoTime() + maxLingerNanos;
+			while (batch.size() < maxSize && iterator.tryAdvance(batch::add, deadline)) {
+				// keep filling
+			}
+			action.accept(batch);
+			return true;
+		}
+
+		@Override
+		public Spliterator<List<T>> trySplit() {
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
 		}
 
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
 	}
 
+	// cancels the producers of the buffered streams which have been abandoned without being closed
+	static final Cleaner CLEANER = Cleaner.create();
+
+	private final Iterator<T> iterator;
+
 	private final Stream<T> delegate;
 
+	private BufferedStream(Iterator<T> iterator) {
+		this.iterator = iterator;
+		this.delegate = iterator.stream();
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a specified cache (supplier).
+	 * It allows to provide a custom Deque supplier, which may be better suitable to the user.
+	 * The input stream is consumed as a task on the given {@link Executor executor}.
+	 */
+	public BufferedStream(Stream<T> stream, Supplier<Deque<T>> queueSupplier, Executor executor) {
+		this(new Iterator<>(stream, queueSupplier, executor));
+	}
+
 	/**
 	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a specified cache (supplier).
 	 * It allows to provide a custom Deque supplier, which may be better suitable to the user.
 	 */
 	public BufferedStream(Stream<T> stream, Supplier<Deque<T>> queueSupplier) {
-		this.delegate = new Iterator<>(stream, queueSupplier).stream();
+		this(stream, queueSupplier, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a specified {@link Cache cache}.
+	 * The input stream is consumed as a task on the given {@link Executor executor}.
+	 */
+	public BufferedStream(Stream<T> stream, Cache<T> cache, Executor executor) {
+		this(new Iterator<>(stream, cache, executor));
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a specified {@link Cache cache}.
+	 */
+	public BufferedStream(Stream<T> stream, Cache<T> cache) {
+		this(stream, cache, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a maximum cache size.
+	 * The input stream is consumed as a task on the given {@link Executor executor}.
+	 */
+	public BufferedStream(Stream<T> stream, int maxCacheSize, Executor executor) {
+		this(stream, new RingBufferCache<>(maxCacheSize), executor);
 	}
 
 	/**
 	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a maximum cache size.
 	 * This will possibly keep the input-stream open for longer,
 	 * but it will save memory as the cache size is kept under control.
+	 *
+	 * @see RingBufferCache
 	 */
 	public BufferedStream(Stream<T> stream, int maxCacheSize) {
-		this(stream, () -> blockingCache(maxCacheSize));
+		this(stream, new RingBufferCache<>(maxCacheSize));
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a maximum cache weight.
+	 * The weight of every element is estimated by the given weigher, for example as the number of bytes it retains.
+	 * This keeps the memory used by the cache under control, even when the sizes of the elements vary a lot.
+	 *
+	 * @see WeightedCache
+	 */
+	public BufferedStream(Stream<T> stream, ToLongFunction<? super T> weigher, long maxWeight) {
+		this(stream, new WeightedCache<>(maxWeight, weigher));
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}, with a maximum cache size,
+	 * which hands the elements over from the producer to the consumer in chunks.
+	 * Instead of queueing every single element, the elements are queued once per chunk,
+	 * which pays off for large numbers of small elements.
+	 * <p>
+	 * The consumer can take the elements out of a chunk while it's still being filled,
+	 * so a slow input stream never holds back the elements which it has already provided.
+	 * Use {@link Integer#MAX_VALUE} as maximum cache size for an unbounded cache.
+	 */
+	public BufferedStream(Stream<T> stream, int maxCacheSize, int chunkSize) {
+		this(stream, new ChunkedCache<>(maxCacheSize, chunkSize));
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream},
+	 * which keeps at most the given number of elements in memory, and spills the rest to temporary files.
+	 * The spilled elements are read back transparently, and their files are deleted once they're consumed,
+	 * or when the BufferedStream is closed.
+	 *
+	 * @see SpillingCache
+	 */
+	public BufferedStream(Stream<T> stream, int maxInMemory, SpillingCache.Serializer<T> serializer) {
+		this(stream, new SpillingCache<>(maxInMemory, serializer));
 	}
 
 	/**
 	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}.
+	 * The input stream is consumed as a task on the given {@link Executor executor},
+	 * for example the {@link ProducerPool#shared() shared producer pool}.
+	 */
+	public BufferedStream(Stream<T> stream, Executor executor) {
+		this(stream, DefaultCache::new, executor);
+	}
+
+	/**
+	 * Creates a BufferedStream of the given {@link java.util.stream.Stream stream}.
+	 * The input stream is consumed on a thread of its own, which is a virtual thread on Java 21 and up.
 	 */
 	public BufferedStream(Stream<T> stream) {
-		this.delegate = new Iterator<>(stream).stream();
+		this(stream, DefaultCache::new);
 	}
 
 	@Override
@@ -166,12 +975,111 @@ public class BufferedStream<T> extends DelegateStream<T> {
 		return delegate;
 	}
 
+	/**
+	 * @return the statistics which are kept by the {@link BufferedStreamMonitor}, or null when monitoring was disabled
+	 */
+	public BufferedStreamStats getStats() {
+		return iterator.getStats();
+	}
+
+	/**
+	 * Cancels the producer as soon as the given number of elements has been consumed.
+	 */
+	@Override
+	public Stream<T> limit(long maxSize) {
+		final Stream<T> limited = delegate.limit(maxSize);
+		iterator.limit(maxSize);
+		return limited;
+	}
+
+	@Override
+	public Optional<T> findFirst() {
+		try {
+			return delegate.findFirst();
+		} finally {
+			iterator.cancel();
+		}
+	}
+
+	@Override
+	public Optional<T> findAny() {
+		try {
+			return delegate.findAny();
+		} finally {
+			iterator.cancel();
+		}
+	}
+
+	@Override
+	public boolean anyMatch(Predicate<? super T> predicate) {
+		try {
+			return delegate.anyMatch(predicate);
+		} finally {
+			iterator.cancel();
+		}
+	}
+
+	@Override
+	public boolean allMatch(Predicate<? super T> predicate) {
+		try {
+			return delegate.allMatch(predicate);
+		} finally {
+			iterator.cancel();
+		}
+	}
+
+	@Override
+	public boolean noneMatch(Predicate<? super T> predicate) {
+		try {
+			return delegate.noneMatch(predicate);
+		} finally {
+			iterator.cancel();
+		}
+	}
+
+	@Override
+	public long count() {
+		try {
+			return delegate.count();
+		} finally {
+			// a sized input stream is counted without ever being consumed
+			iterator.cancel();
+		}
+	}
+
+	/**
+	 * @return a {@link ParkingCache} with the {@link ParkingCache#DEFAULT_SIZE default size}
+	 */
 	public static <T> Deque<T> blockingCache() {
-		return new LimitedBlockingCache<>();
+		return new ParkingCache<>();
 	}
 
+	/**
+	 * @return a {@link ParkingCache} which holds at most the given number of elements
+	 */
 	public static <T> Deque<T> blockingCache(int limit) {
-		return new LimitedBlockingCache<>(limit);
+		return new ParkingCache<>(limit);
+	}
+
+	/**
+	 * @return a {@link WeightedCache} which holds elements up to the given total weight
+	 */
+	public static <T> WeightedCache<T> weightedCache(long maxWeight, ToLongFunction<? super T> weigher) {
+		return new WeightedCache<>(maxWeight, weigher);
+	}
+
+	/**
+	 * @return a {@link RingBufferCache} which holds at most the given number of elements
+	 */
+	public static <T> RingBufferCache<T> ringBufferCache(int limit) {
+		return new RingBufferCache<>(limit);
+	}
+
+	/**
+	 * @return a {@link SpillingCache} which keeps at most the given number of elements in memory
+	 */
+	public static <T> SpillingCache<T> spillingCache(int maxInMemory, SpillingCache.Serializer<T> serializer) {
+		return new SpillingCache<>(maxInMemory, serializer);
 	}
 
 }
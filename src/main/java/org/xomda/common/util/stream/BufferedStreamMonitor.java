@@ -0,0 +1,179 @@
+package org.xomda.common.util.stream;
+
+import static org.xomda.common.exception.SneakyThrow.throwSneaky;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * An opt-in registry of the live {@link BufferedStream buffered streams}, which is exposed as an MXBean
+ * under the name {@value #OBJECT_NAME}.
+ * <p>
+ * Monitoring is disabled by default, in which case a BufferedStream doesn't keep any statistics at all.
+ * It's {@link #enable() enabled} programmatically, or by setting the system property {@value #ENABLED_PROPERTY} to <code>true</code>.
+ * Only the streams which are created while monitoring is enabled are tracked,
+ * until they have been consumed, closed or garbage collected.
+ */
+public final class BufferedStreamMonitor implements BufferedStreamMonitorMXBean {
+
+	public static final String OBJECT_NAME = "org.xomda.common:type=BufferedStreamMonitor";
+
+	public static final String ENABLED_PROPERTY = "org.xomda.common.stream.monitor";
+
+	private static final BufferedStreamMonitor INSTANCE = new BufferedStreamMonitor();
+
+	private static volatile boolean enabled;
+
+	private final AtomicLong ids = new AtomicLong();
+	private final Map<Long, BufferedStreamStats> live = new ConcurrentHashMap<>();
+
+	// the totals of the streams which are no longer live
+	private final LongAdder produced = new LongAdder();
+	private final LongAdder consumed = new LongAdder();
+	private final LongAdder producerStallNanos = new LongAdder();
+	private final LongAdder consumerStallNanos = new LongAdder();
+
+	static {
+		if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+			enable();
+		}
+	}
+
+	/**
+	 * @return the registry, which is the same instance as the one registered with the platform MBean server
+	 */
+	public static BufferedStreamMonitor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts tracking the buffered streams which are created from now on, and registers the MXBean.
+	 */
+	public static synchronized void enable() {
+		if (enabled) {
+			return;
+		}
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(INSTANCE, name);
+			}
+		} catch (JMException e) {
+			throwSneaky(e);
+		}
+		enabled = true;
+	}
+
+	/**
+	 * Stops tracking buffered streams, forgets about the ones which are tracked, and unregisters the MXBean.
+	 */
+	public static synchronized void disable() {
+		if (!enabled) {
+			return;
+		}
+		enabled = false;
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (JMException e) {
+			throwSneaky(e);
+		}
+		INSTANCE.reset();
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the statistics to keep for a new buffered stream, or null when monitoring is disabled
+	 */
+	static BufferedStreamStats register(BufferedStream.Cache<?> cache) {
+		if (!enabled) {
+			return null;
+		}
+		final BufferedStreamStats stats = new BufferedStreamStats(INSTANCE.ids.incrementAndGet(), cache.getClass().getSimpleName());
+		INSTANCE.live.put(stats.getId(), stats);
+		return stats;
+	}
+
+	/**
+	 * Stops tracking the given buffered stream, and adds its statistics to the totals.
+	 */
+	static void unregister(BufferedStreamStats stats) {
+		if (null != stats && null != INSTANCE.live.remove(stats.getId())) {
+			INSTANCE.produced.add(stats.getProducedCount());
+			INSTANCE.consumed.add(stats.getConsumedCount());
+			INSTANCE.producerStallNanos.add(stats.producerStallNanos());
+			INSTANCE.consumerStallNanos.add(stats.consumerStallNanos());
+		}
+	}
+
+	@Override
+	public int getLiveStreamCount() {
+		return live.size();
+	}
+
+	@Override
+	public int getActiveProducerCount() {
+		return (int) live.values().stream().filter(BufferedStreamStats::isProducerActive).count();
+	}
+
+	@Override
+	public long getProducedCount() {
+		return produced.sum() + sum(BufferedStreamStats::getProducedCount);
+	}
+
+	@Override
+	public long getConsumedCount() {
+		return consumed.sum() + sum(BufferedStreamStats::getConsumedCount);
+	}
+
+	@Override
+	public long getProducerStallMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(producerStallNanos.sum() + sum(BufferedStreamStats::producerStallNanos));
+	}
+
+	@Override
+	public long getConsumerStallMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(consumerStallNanos.sum() + sum(BufferedStreamStats::consumerStallNanos));
+	}
+
+	@Override
+	public List<BufferedStreamStats> getStreams() {
+		return live.values().stream()
+				.sorted(Comparator.comparingLong(BufferedStreamStats::getId))
+				.toList();
+	}
+
+	private long sum(ToLongFunction<BufferedStreamStats> counter) {
+		return live.values().stream().mapToLong(counter).sum();
+	}
+
+	private void reset() {
+		live.clear();
+		produced.reset();
+		consumed.reset();
+		producerStallNanos.reset();
+		consumerStallNanos.reset();
+	}
+
+	private BufferedStreamMonitor() {
+	}
+
+}
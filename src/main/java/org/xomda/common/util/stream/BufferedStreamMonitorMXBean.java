@@ -0,0 +1,45 @@
+package org.xomda.common.util.stream;
+
+import java.util.List;
+
+/**
+ * The management interface of the {@link BufferedStreamMonitor}, as registered with the platform MBean server.
+ */
+public interface BufferedStreamMonitorMXBean {
+
+	/**
+	 * @return the number of buffered streams which haven't been consumed or closed yet
+	 */
+	int getLiveStreamCount();
+
+	/**
+	 * @return the number of producers which are still consuming their input stream
+	 */
+	int getActiveProducerCount();
+
+	/**
+	 * @return the number of elements produced by all buffered streams, since monitoring was enabled
+	 */
+	long getProducedCount();
+
+	/**
+	 * @return the number of elements consumed from all buffered streams, since monitoring was enabled
+	 */
+	long getConsumedCount();
+
+	/**
+	 * @return the time all producers have spent waiting on a full cache, since monitoring was enabled
+	 */
+	long getProducerStallMillis();
+
+	/**
+	 * @return the time all consumers have spent waiting on an empty cache, since monitoring was enabled
+	 */
+	long getConsumerStallMillis();
+
+	/**
+	 * @return the statistics of the live buffered streams
+	 */
+	List<BufferedStreamStats> getStreams();
+
+}
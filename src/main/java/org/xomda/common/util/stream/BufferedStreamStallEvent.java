@@ -0,0 +1,57 @@
+package org.xomda.common.util.stream;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for a producer which is parked on a full cache, or a consumer which is parked on an empty cache.
+ * The short spinning phase before parking is not included.
+ */
+@Name("org.xomda.common.stream.BufferedStreamStall")
+@Label("Buffered Stream Stall")
+@Description("A producer waiting for room in a full cache, or a consumer waiting for an element in an empty cache")
+@Category({ "XOMDA", "Streams" })
+@Threshold("1 ms")
+@StackTrace(false)
+final class BufferedStreamStallEvent extends Event {
+
+	@Label("Waiting")
+	@Description("Whether the producer or the consumer was waiting")
+	String waiting;
+
+	@Label("Cache")
+	@Description("The simple class name of the cache")
+	String cache;
+
+	static void setUp() {
+		new BufferedStreamStallEvent().shouldCommit();
+	}
+
+	/**
+	 * @return a new event, which has begun, typed as an object, so the {@link Signal} doesn't refer to the jdk.jfr module
+	 */
+	static Object started() {
+		final BufferedStreamStallEvent event = new BufferedStreamStallEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the given event, which was {@link #started() started} before, and commits it when it took long enough.
+	 */
+	static void ended(final Object started, final String waiting, final String cache) {
+		final BufferedStreamStallEvent event = (BufferedStreamStallEvent) started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.waiting = waiting;
+			event.cache = cache;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package org.xomda.common.util.stream;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The live statistics of one {@link BufferedStream}, as tracked by the {@link BufferedStreamMonitor}.
+ * <p>
+ * Every counter has a single writer, either the producer or the consumer, so reading them is cheap,
+ * but a set of readings is not guaranteed to be consistent.
+ */
+public final class BufferedStreamStats {
+
+	private final long id;
+	private final String cache;
+	private final long createdAt = System.currentTimeMillis();
+
+	// only written by the producer
+	private volatile boolean producerActive;
+	private volatile long produced;
+	private volatile long peakDepth;
+	private volatile long producerStallNanos;
+
+	// only written by the consumer
+	private volatile long consumed;
+	private volatile long consumerStallNanos;
+
+	BufferedStreamStats(long id, String cache) {
+		this.id = id;
+		this.cache = cache;
+	}
+
+	void producerStarted() {
+		producerActive = true;
+	}
+
+	void producerFinished() {
+		producerActive = false;
+	}
+
+	/**
+	 * @param putNanos the time it took to put the element, which is mostly spent waiting for room in a bounded cache
+	 */
+	void produced(long putNanos) {
+		final long depth = ++produced - consumed;
+		if (depth > peakDepth) {
+			peakDepth = depth;
+		}
+		producerStallNanos += putNanos;
+	}
+
+	void consumed(long count) {
+		consumed += count;
+	}
+
+	void consumerStalled(long nanos) {
+		consumerStallNanos += nanos;
+	}
+
+	/**
+	 * @return a number which identifies the stream, in the order the streams have been created
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return the simple class name of the cache of the stream
+	 */
+	public String getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return when the stream was created, in milliseconds since the epoch
+	 */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * @return whether the producer is still consuming the input stream
+	 */
+	public boolean isProducerActive() {
+		return producerActive;
+	}
+
+	/**
+	 * @return the number of elements put into the cache by the producer
+	 */
+	public long getProducedCount() {
+		return produced;
+	}
+
+	/**
+	 * @return the number of elements handed over to the consumer
+	 */
+	public long getConsumedCount() {
+		return consumed;
+	}
+
+	/**
+	 * @return the (approximate) number of elements which are currently buffered
+	 */
+	public long getDepth() {
+		return Math.max(0L, produced - consumed);
+	}
+
+	/**
+	 * @return the highest (approximate) number of elements which have been buffered at once
+	 */
+	public long getPeakDepth() {
+		return peakDepth;
+	}
+
+	/**
+	 * @return the time the producer has spent putting elements, which is mostly waiting on a full cache
+	 */
+	public long getProducerStallMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(producerStallNanos);
+	}
+
+	/**
+	 * @return the time the consumer has spent waiting on an empty cache
+	 */
+	public long getConsumerStallMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(consumerStallNanos);
+	}
+
+	long producerStallNanos() {
+		return producerStallNanos;
+	}
+
+	long consumerStallNanos() {
+		return consumerStallNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "BufferedStream #%s [cache=%s, produced=%s, consumed=%s, depth=%s, peak=%s, producer stalled=%sms, consumer stalled=%sms]"
+				.formatted(id, cache, produced, consumed, getDepth(), peakDepth, getProducerStallMillis(), getConsumerStallMillis());
+	}
+
+}
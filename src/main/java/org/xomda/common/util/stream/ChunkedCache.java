@@ -0,0 +1,146 @@
+package org.xomda.common.util.stream;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A {@link BufferedStream.Cache cache} which hands elements over in chunks.
+ * A chunk is queued as soon as the producer starts filling it, and the consumer follows the producer within it,
+ * so no element is ever held back from a consumer which is waiting for it.
+ * Within a chunk, the producer only publishes how far it has filled it, and the consumer just reads up to there,
+ * which saves a node allocation and a compare-and-set per element.
+ */
+class ChunkedCache<T> implements BufferedStream.Cache<T> {
+
+	// an array of elements, which is filled by the producer while the consumer drains it
+	private static final class Chunk {
+
+		private final Object[] elements;
+
+		// the number of elements which have been put in the chunk, published after the element itself
+		private volatile int count;
+
+		Chunk(final int size) {
+			this.elements = new Object[size];
+		}
+	}
+
+	private final int chunkSize;
+	private final int maxChunks;
+
+	// the chunks which the consumer hasn't started to drain yet
+	private final ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+	// the chunks which haven't been drained yet, including the one which is being filled and the one which is being drained
+	private final AtomicInteger chunkCount = new AtomicInteger();
+	private final Signal notFull = new Signal(Signal.PRODUCER, this);
+	private final BooleanSupplier hasRoom = this::hasRoom;
+
+	private volatile boolean closed;
+
+	// only touched by the producer
+	private Chunk filling;
+	private int fillIndex;
+
+	// only touched by the consumer
+	private Chunk draining;
+	private int drainIndex;
+	// the count of the chunk which is being drained, as last read by the consumer
+	private int drainLimit;
+
+	/**
+	 * @param maxSize the maximum number of elements which are put, but not yet consumed, rounded up to whole chunks
+	 * @param chunkSize the number of elements in a chunk
+	 */
+	ChunkedCache(int maxSize, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("A chunk size below 1 does not make sense");
+		}
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("A maximum size below 1 does not make sense");
+		}
+		this.chunkSize = chunkSize;
+		this.maxChunks = maxSize / chunkSize + (maxSize % chunkSize == 0 ? 0 : 1);
+	}
+
+	@Override
+	public void put(T value) {
+		Objects.requireNonNull(value);
+		if (closed) {
+			return;
+		}
+		if (null != filling && fillIndex < chunkSize) {
+			filling.elements[fillIndex] = value;
+			filling.count = ++fillIndex;
+			return;
+		}
+		notFull.await(hasRoom);
+		if (closed) {
+			return;
+		}
+		// the chunk is queued once it holds its first element, so the consumer never finds an empty chunk
+		final Chunk chunk = new Chunk(chunkSize);
+		chunk.elements[0] = value;
+		chunk.count = 1;
+		filling = chunk;
+		fillIndex = 1;
+		chunkCount.incrementAndGet();
+		chunks.offer(chunk);
+	}
+
+	@Override
+	public T poll() {
+		if ((null == draining || drainIndex == drainLimit) && !nextElements()) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		final T value = (T) draining.elements[drainIndex];
+		draining.elements[drainIndex++] = null;
+		if (drainIndex == chunkSize) {
+			draining = null;
+			chunkCount.decrementAndGet();
+			notFull.signal();
+		}
+		return value;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		final Chunk chunk = draining;
+		return (null == chunk || drainIndex == chunk.count) && chunks.isEmpty();
+	}
+
+	/**
+	 * Wakes up the producer, which discards whatever it puts from now on.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		notFull.signal();
+	}
+
+	/**
+	 * @return false when the producer hasn't put any more elements
+	 */
+	private boolean nextElements() {
+		if (null != draining) {
+			// the chunk is still being filled
+			drainLimit = draining.count;
+			return drainIndex < drainLimit;
+		}
+		final Chunk chunk = chunks.poll();
+		if (null == chunk) {
+			return false;
+		}
+		draining = chunk;
+		drainIndex = 0;
+		drainLimit = chunk.count;
+		return true;
+	}
+
+	private boolean hasRoom() {
+		return closed || chunkCount.get() < maxChunks;
+	}
+
+}
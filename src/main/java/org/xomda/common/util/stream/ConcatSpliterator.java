@@ -0,0 +1,95 @@
+package org.xomda.common.util.stream;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Concatenates a number of {@link Spliterator spliterators}, by walking through an array of them.
+ * <p>
+ * In contrast to nesting {@link java.util.stream.Stream#concat(java.util.stream.Stream, java.util.stream.Stream) Stream.concat},
+ * every element only passes through one level, no matter how many spliterators are concatenated.
+ * It splits in the middle of the remaining spliterators, and only splits the last remaining spliterator itself.
+ */
+final class ConcatSpliterator<T> implements Spliterator<T> {
+
+	private final Spliterator<? extends T>[] sources;
+	private final int characteristics;
+
+	// the remaining sources, from the current one up to (but not including) the end
+	private int index;
+	private final int end;
+
+	ConcatSpliterator(final Spliterator<? extends T>[] sources) {
+		this(sources, 0, sources.length);
+	}
+
+	private ConcatSpliterator(final Spliterator<? extends T>[] sources, final int index, final int end) {
+		this.sources = sources;
+		this.index = index;
+		this.end = end;
+		int characteristics = ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE | CONCURRENT;
+		for (int i = index; i < end; i++) {
+			characteristics &= sources[i].characteristics();
+		}
+		if (sum() < 0) {
+			characteristics &= ~(SIZED | SUBSIZED);
+		}
+		this.characteristics = characteristics;
+	}
+
+	// the total size of the remaining sources, negative when it overflows
+	private long sum() {
+		long size = 0L;
+		for (int i = index; i < end && size >= 0; i++) {
+			size += sources[i].estimateSize();
+		}
+		return size;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super T> action) {
+		for (; index < end; index++) {
+			if (sources[index].tryAdvance(action)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super T> action) {
+		for (; index < end; index++) {
+			sources[index].forEachRemaining(action);
+		}
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		final int remaining = end - index;
+		if (remaining > 1) {
+			final int mid = (index + end) >>> 1;
+			final Spliterator<T> prefix = new ConcatSpliterator<>(sources, index, mid);
+			index = mid;
+			return prefix;
+		}
+		if (remaining == 1) {
+			@SuppressWarnings("unchecked")
+			final Spliterator<T> prefix = (Spliterator<T>) sources[index].trySplit();
+			return prefix;
+		}
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		final long size = sum();
+		return size < 0 ? Long.MAX_VALUE : size;
+	}
+
+	@Override
+	public int characteristics() {
+		// once down to the last source, which splits itself, whatever it has lost by splitting is lost here too
+		return end - index == 1 ? characteristics & sources[index].characteristics() : characteristics;
+	}
+
+}
@@ -0,0 +1,193 @@
+package org.xomda.common.util.stream;
+
+import static org.xomda.common.exception.SneakyThrow.throwSneaky;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Maps the elements of a {@link Stream stream} concurrently, with a bounded number of calls in flight.
+ * <p>
+ * It's built on top of a {@link BufferedStream}: the producer turns every element into a task,
+ * which is only started once it's admitted to the {@link TaskCache cache}, so the producer blocks as long as
+ * the maximum number of tasks is running, or is done but not taken by the consumer yet.
+ * In order, the consumer simply waits for the tasks in the order they've been started, which makes the cache a reorder buffer.
+ * Out of order, the consumer takes whichever task completes first.
+ */
+final class ConcurrentMapping {
+
+	/**
+	 * @see Streams#mapConcurrent(Stream, Function, int, Executor)
+	 */
+	static <T, R> Stream<R> ordered(Stream<T> stream, Function<? super T, ? extends R> mapper, int maxConcurrency, Executor executor) {
+		final TaskCache<R> cache = new TaskCache<>(maxConcurrency, executor, false);
+		return new BufferedStream<>(stream.map(t -> new Task<>(() -> mapper.apply(t), cache)), cache)
+				.map(cache::join);
+	}
+
+	/**
+	 * @see Streams#mapConcurrentUnordered(Stream, Function, int, Executor)
+	 */
+	static <T, R> Stream<R> unordered(Stream<T> stream, Function<? super T, ? extends R> mapper, int maxConcurrency, Executor executor) {
+		final TaskCache<R> cache = new TaskCache<>(maxConcurrency, executor, true);
+		return new BufferedStream<>(stream.map(t -> new Task<>(() -> mapper.apply(t), cache)), cache)
+				.map(cache::joinAny);
+	}
+
+	/**
+	 * A call of the mapper for one element, which reports itself to the cache once it's done.
+	 */
+	private static final class Task<R> implements Runnable {
+
+		private final Supplier<? extends R> call;
+		private final TaskCache<R> cache;
+		private final CompletableFuture<R> result = new CompletableFuture<>();
+
+		Task(Supplier<? extends R> call, TaskCache<R> cache) {
+			this.call = call;
+			this.cache = cache;
+		}
+
+		@Override
+		public void run() {
+			try {
+				result.complete(call.get());
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			} finally {
+				cache.completed(this);
+			}
+		}
+
+		R join() {
+			try {
+				return result.join();
+			} catch (CompletionException e) {
+				throwSneaky(null == e.getCause() ? e : e.getCause());
+				return null; // "unreachable"
+			}
+		}
+	}
+
+	/**
+	 * Holds the tasks in the order they've been started,
+	 * and blocks the producer as long as the maximum number of tasks hasn't been taken by the consumer yet.
+	 */
+	private static final class TaskCache<R> implements BufferedStream.Cache<Task<R>> {
+
+		private final int maxConcurrency;
+		private final Executor executor;
+
+		private final ConcurrentLinkedQueue<Task<R>> started = new ConcurrentLinkedQueue<>();
+		// only filled when the consumer takes the tasks in the order they complete
+		private final LinkedBlockingQueue<Task<R>> completed;
+
+		// the number of tasks which have been started, and which haven't been taken by the consumer yet
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final Signal notFull = new Signal(Signal.PRODUCER, this);
+		private final BooleanSupplier hasRoom = this::hasRoom;
+
+		private volatile boolean closed;
+
+		TaskCache(int maxConcurrency, Executor executor, boolean unordered) {
+			if (maxConcurrency < 1) {
+				throw new IllegalArgumentException("A maximum concurrency below 1 does not make sense");
+			}
+			this.maxConcurrency = maxConcurrency;
+			this.executor = Objects.requireNonNull(executor);
+			this.completed = unordered ? new LinkedBlockingQueue<>() : null;
+		}
+
+		@Override
+		public void put(Task<R> task) {
+			notFull.await(hasRoom);
+			if (closed) {
+				return;
+			}
+			inFlight.incrementAndGet();
+			started.offer(task);
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.result.completeExceptionally(e);
+				completed(task);
+				throw e;
+			}
+		}
+
+		@Override
+		public Task<R> poll() {
+			return started.poll();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return started.isEmpty();
+		}
+
+		/**
+		 * Wakes up the producer, which discards whatever it puts from now on.
+		 */
+		@Override
+		public void close() {
+			closed = true;
+			notFull.signal();
+		}
+
+		void completed(Task<R> task) {
+			if (null != completed) {
+				completed.offer(task);
+			}
+		}
+
+		/**
+		 * @return the result of the given task, as soon as it's done
+		 */
+		R join(Task<R> task) {
+			try {
+				return task.join();
+			} finally {
+				release();
+			}
+		}
+
+		/**
+		 * @return the result of the first task which is done, and which hasn't been taken yet
+		 */
+		R joinAny(Task<R> ignored) {
+			// every task which has been polled stands for one completion
+			try {
+				return completed.take().join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throwSneaky(e);
+				return null; // "unreachable"
+			} finally {
+				release();
+			}
+		}
+
+		private void release() {
+			inFlight.decrementAndGet();
+			notFull.signal();
+		}
+
+		private boolean hasRoom() {
+			return closed || inFlight.get() < maxConcurrency;
+		}
+	}
+
+	private ConcurrentMapping() {
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.xomda.common.util.stream;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Concatenates the {@link Stream streams} which are provided by a number of {@link Supplier suppliers},
+ * only getting the next stream once the previous one has run out of elements, and closing every stream as soon as it has.
+ * So at most one of the streams is open at a time.
+ */
+final class LazyConcatSpliterator<T> implements Spliterator<T>, AutoCloseable {
+
+	private final Iterator<? extends Supplier<? extends Stream<? extends T>>> suppliers;
+
+	// the stream which is currently being consumed, if any
+	private Stream<? extends T> current;
+	private Spliterator<? extends T> spliterator;
+
+	LazyConcatSpliterator(final Iterator<? extends Supplier<? extends Stream<? extends T>>> suppliers) {
+		this.suppliers = Objects.requireNonNull(suppliers);
+	}
+
+	/**
+	 * @return false when there are no more streams
+	 */
+	private boolean open() {
+		if (null != current) {
+			return true;
+		}
+		if (!suppliers.hasNext()) {
+			return false;
+		}
+		current = Objects.requireNonNull(suppliers.next().get());
+		spliterator = current.spliterator();
+		return true;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super T> action) {
+		while (open()) {
+			if (spliterator.tryAdvance(action)) {
+				return true;
+			}
+			close();
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super T> action) {
+		while (open()) {
+			spliterator.forEachRemaining(action);
+			close();
+		}
+	}
+
+	/**
+	 * Closes the stream which is currently being consumed.
+	 */
+	@Override
+	public void close() {
+		final Stream<? extends T> stream = current;
+		current = null;
+		spliterator = null;
+		if (null != stream) {
+			stream.close();
+		}
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED;
+	}
+
+}
@@ -0,0 +1,274 @@
+package org.xomda.common.util.stream;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Drains a number of {@link Stream streams} concurrently, every one of them as a producer task of its own,
+ * into a single bounded buffer, which is served as one stream, in the order the elements arrive.
+ * <p>
+ * As there are multiple producers, the buffer is guarded by a lock, and the consumer takes out
+ * whatever is in the buffer at once, so it only takes the lock once per batch.
+ * When one of the streams fails, the others are stopped, and the exception is rethrown
+ * once the elements which were buffered before have been consumed.
+ */
+final class Merge<T> extends Producer {
+
+	// stands in for a null element, which the buffer can't hold
+	private static final Object NULL = new Object();
+
+	private final List<? extends Stream<? extends T>> streams;
+	private final int limit;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final Condition notEmpty = lock.newCondition();
+
+	// all guarded by the lock
+	private final ArrayDeque<Object> buffer = new ArrayDeque<>();
+	private int running;
+	private boolean stopped;
+
+	// the elements which have been taken out of the buffer, only touched by the consumer
+	private final ArrayDeque<Object> batch = new ArrayDeque<>();
+
+	/**
+	 * @see Streams#merge(List, int, Executor)
+	 */
+	static <T> Stream<T> merge(final List<? extends Stream<? extends T>> streams, final int maxSize, final Executor executor) {
+		final Merge<T> merge = new Merge<>(streams, maxSize, executor);
+		final Spliterator<T> spliterator = new Merged<>(merge);
+		final Cleaner.Cleanable cleanable = BufferedStream.CLEANER.register(spliterator, merge::cancel);
+		return StreamSupport.stream(spliterator, false).onClose(cleanable::clean);
+	}
+
+	private Merge(final List<? extends Stream<? extends T>> streams, final int maxSize, final Executor executor) {
+		super(executor);
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("A maximum size below 1 does not make sense");
+		}
+		this.streams = List.copyOf(streams);
+		this.limit = maxSize;
+	}
+
+	/**
+	 * Hands every stream over to the executor, as a producer of its own.
+	 * When the executor rejects one of them, the merge fails, and the streams which haven't been handed over are closed,
+	 * while the producers which did start stop as soon as they get to push their next element.
+	 */
+	@Override
+	void start(final Executor executor) {
+		lock.lock();
+		try {
+			running = streams.size();
+		} finally {
+			lock.unlock();
+		}
+		for (int i = 0; i < streams.size(); i++) {
+			final Stream<? extends T> stream = streams.get(i);
+			try {
+				executor.execute(() -> produce(stream, () -> stream.forEach(this::push)));
+			} catch (RejectedExecutionException e) {
+				rejected(streams.subList(i, streams.size()), e);
+				return;
+			}
+		}
+	}
+
+	private void rejected(final List<? extends Stream<? extends T>> rest, final RejectedExecutionException e) {
+		try {
+			Streams.closeAll(rest);
+		} catch (Throwable suppressed) {
+			e.addSuppressed(suppressed);
+		}
+		lock.lock();
+		try {
+			running -= rest.size();
+			failed(e);
+			if (running == 0) {
+				super.finished();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void push(final T value) {
+		lock.lock();
+		try {
+			while (!stopped && buffer.size() >= limit) {
+				notFull.awaitUninterruptibly();
+			}
+			if (stopped) {
+				// the consumer is no longer interested, or one of the other streams has failed
+				throw CANCELLED;
+			}
+			buffer.add(null == value ? NULL : value);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Keeps the first failure, with the ones of the other streams as suppressed exceptions, and stops the other producers.
+	 */
+	@Override
+	void failed(final Throwable e) {
+		lock.lock();
+		try {
+			super.failed(e);
+			stop();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Only marks the input as finished once the last producer has finished.
+	 */
+	@Override
+	void finished() {
+		lock.lock();
+		try {
+			if (--running == 0) {
+				super.finished();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	void closeInput() {
+		Streams.closeAll(streams);
+	}
+
+	@Override
+	void unblock() {
+		lock.lock();
+		try {
+			buffer.clear();
+			stop();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	void signalDone() {
+		lock.lock();
+		try {
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// wakes up all producers, so they close their input streams
+	private void stop() {
+		stopped = true;
+		notFull.signalAll();
+		notEmpty.signal();
+	}
+
+	/**
+	 * Takes out everything in the buffer, waiting until there's at least one element.
+	 *
+	 * @return false when all elements have been consumed
+	 */
+	private boolean fill() {
+		if (!batch.isEmpty()) {
+			return true;
+		}
+		if (isCancelled()) {
+			return false;
+		}
+		startIfNeeded();
+		lock.lock();
+		try {
+			while (buffer.isEmpty() && running > 0 && !isCancelled()) {
+				notEmpty.awaitUninterruptibly();
+			}
+			if (!buffer.isEmpty() && !isCancelled()) {
+				batch.addAll(buffer);
+				buffer.clear();
+				notFull.signalAll();
+				return true;
+			}
+		} finally {
+			lock.unlock();
+		}
+		rethrowFailure();
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T next() {
+		final Object value = batch.poll();
+		return value == NULL ? null : (T) value;
+	}
+
+	private boolean tryAdvance(final Consumer<? super T> action) {
+		if (!fill()) {
+			return false;
+		}
+		action.accept(next());
+		return true;
+	}
+
+	private void forEachRemaining(final Consumer<? super T> action) {
+		while (fill()) {
+			while (!batch.isEmpty()) {
+				action.accept(next());
+			}
+		}
+	}
+
+	/**
+	 * The spliterator of the merged stream, which is registered with the cleaner, apart from the merge itself.
+	 */
+	private static final class Merged<T> implements Spliterator<T> {
+
+		private final Merge<T> merge;
+
+		Merged(final Merge<T> merge) {
+			this.merge = merge;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super T> action) {
+			return merge.tryAdvance(action);
+		}
+
+		@Override
+		public void forEachRemaining(final Consumer<? super T> action) {
+			merge.forEachRemaining(action);
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,522 @@
+package org.xomda.common.util.stream;
+
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Array;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+import java.util.stream.BaseStream;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The primitive counterpart of the {@link BufferedStream.Iterator iterator} of a {@link BufferedStream}:
+ * it drains a primitive stream on a producer thread, into a ring of primitives, so the values are never boxed.
+ * <p>
+ * The positions of the producer and the consumer are kept apart like in the {@link RingBufferCache}.
+ * A bounded buffer makes the producer wait when it's full.
+ * An unbounded buffer starts out small, and doubles its ring when it's full instead,
+ * after which the producer only writes to the new ring. The consumer may still read the elements it already knew of
+ * from the old ring, as the producer never overwrites an element which hasn't been consumed yet.
+ * <p>
+ * The ring is an array of the primitive type, so the buffers of the primitive types only store values in it, and load them from it.
+ *
+ * @param <A> the type of the array which holds the ring
+ */
+abstract class PrimitiveBuffer<A> extends Producer {
+
+	static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final int INITIAL_CAPACITY = RingBufferCache.DEFAULT_SIZE;
+
+	private final static int MIN_BATCH = 1 << 4;
+	private final static int MAX_BATCH = 1 << 12;
+
+	// the positions of the producer and the consumer, on cache lines of their own
+	private static final class Positions extends RingBufferPadding {
+	}
+
+	private final BaseStream<?, ?> stream;
+	private final IntFunction<A> newArray;
+
+	// the maximum number of buffered elements
+	private final long limit;
+
+	private final Positions positions = new Positions();
+
+	// the size of the current ring, and when the producer has to look at the position of the consumer, only touched by the producer
+	private int capacity;
+	private int threshold;
+
+	// the ring of the producer, and the latest one which is known to the consumer
+	private A writeBuffer;
+	private volatile A buffer;
+	private A readBuffer;
+
+	private final Signal notFull = new Signal(Signal.PRODUCER, this);
+	private final BooleanSupplier hasRoom = this::hasRoom;
+
+	private final Signal available = new Signal(Signal.CONSUMER, this);
+	private final BooleanSupplier isAvailable = this::isAvailable;
+
+	// what is known about the input stream, passed on by the spliterator
+	private final int characteristics;
+	private final long size;
+
+	// only touched by the consumer
+	private long consumed;
+	private int batchSize = MIN_BATCH;
+
+	/**
+	 * @param source the spliterator of the input stream, or null when the input stream is parallel
+	 * @param maxSize the maximum number of buffered elements, or {@link #UNBOUNDED}
+	 * @param newArray creates the array of a ring of the given capacity
+	 */
+	PrimitiveBuffer(final BaseStream<?, ?> stream, final Spliterator<?> source, final int maxSize, final Executor executor, final IntFunction<A> newArray) {
+		super(executor);
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("A maximum size below 1 does not make sense");
+		}
+		if (maxSize > MAX_CAPACITY && maxSize != UNBOUNDED) {
+			throw new IllegalArgumentException("A maximum size above %s is not supported".formatted(MAX_CAPACITY));
+		}
+		this.stream = Objects.requireNonNull(stream);
+		this.newArray = newArray;
+		this.limit = Math.min(maxSize, MAX_CAPACITY);
+		this.capacity = maxSize == UNBOUNDED ? INITIAL_CAPACITY : maxSize == 1 ? 1 : Integer.highestOneBit(maxSize - 1) << 1;
+		this.threshold = (int) Math.min(capacity, limit);
+		this.buffer = this.writeBuffer = this.readBuffer = newArray.apply(capacity);
+		if (null == source) {
+			this.characteristics = 0;
+			this.size = Long.MAX_VALUE;
+		} else {
+			this.characteristics = source.characteristics() & (Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.SORTED);
+			this.size = source.estimateSize();
+		}
+	}
+
+	/**
+	 * Pushes all elements of the input stream, one by one, with {@link #claim()} and {@link #publish(long)}.
+	 */
+	abstract void drain();
+
+	/**
+	 * @return a spliterator over the given values, which the consumer has split off
+	 */
+	abstract Spliterator<?> batch(A values);
+
+	@Override
+	final void start(final Executor executor) {
+		executor.execute(() -> produce(stream, this::drain));
+	}
+
+	@Override
+	final void closeInput() {
+		stream.close();
+	}
+
+	@Override
+	final void unblock() {
+		notFull.signal();
+	}
+
+	@Override
+	final void signalDone() {
+		available.signal();
+	}
+
+	/**
+	 * @return the ring to write the claimed element to
+	 */
+	final A writeBuffer() {
+		return writeBuffer;
+	}
+
+	/**
+	 * @return the ring to read the next element from
+	 */
+	final A readBuffer() {
+		return readBuffer;
+	}
+
+	/**
+	 * @return the position to write the next element to, once there is room for it
+	 */
+	final long claim() {
+		checkCancelled();
+		final Positions p = positions;
+		final long t = p.tail;
+		if (t - p.headCache >= threshold) {
+			p.headCache = p.head;
+			if (t - p.headCache >= limit) {
+				notFull.await(hasRoom);
+				checkCancelled();
+				p.headCache = p.head;
+			}
+			if (t - p.headCache >= capacity) {
+				capacity <<= 1;
+				threshold = (int) Math.min(capacity, limit);
+				final A ring = newArray.apply(capacity);
+				copy(writeBuffer, p.headCache, t, ring, 0L);
+				buffer = writeBuffer = ring;
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * Makes the element at the given position available to the consumer.
+	 */
+	final void publish(final long t) {
+		positions.tail = t + 1;
+		if (available.hasWaiter()) {
+			available.signal();
+		}
+	}
+
+	/**
+	 * @return the position of the next element to read, or -1 when all elements have been consumed
+	 */
+	final long next() {
+		if (isCancelled()) {
+			return -1L;
+		}
+		final Positions p = positions;
+		final long h = p.head;
+		if (h < p.tailCache) {
+			return h;
+		}
+		startIfNeeded();
+		p.tailCache = p.tail;
+		readBuffer = buffer;
+		if (h < p.tailCache) {
+			return h;
+		}
+		available.await(isAvailable);
+		p.tailCache = p.tail;
+		readBuffer = buffer;
+		if (h < p.tailCache && !isCancelled()) {
+			return h;
+		}
+		rethrowFailure();
+		return -1L;
+	}
+
+	/**
+	 * Hands the given number of elements, from the given position on, over to the consumer.
+	 */
+	final void consumed(final long h, final int count) {
+		positions.head = h + count;
+		consumed += count;
+		notFull.signal();
+	}
+
+	final Spliterator<?> trySplit() {
+		final long h = next();
+		if (h < 0) {
+			return null;
+		}
+		final int max = (int) Math.min(batchSize, positions.tailCache - h);
+		batchSize = Math.min(MAX_BATCH, batchSize << 1);
+		final A values = newArray.apply(max);
+		copy(readBuffer, h, h + max, values, h);
+		consumed(h, max);
+		return batch(values);
+	}
+
+	final long estimateSize() {
+		return (characteristics & Spliterator.SIZED) == 0 ? size : Math.max(0L, size - consumed);
+	}
+
+	final int characteristics() {
+		return characteristics | Spliterator.ORDERED | Spliterator.NONNULL;
+	}
+
+	private boolean hasRoom() {
+		return isCancelled() || positions.tail - positions.head < limit;
+	}
+
+	private boolean isAvailable() {
+		return isDone() || isCancelled() || positions.head < positions.tail;
+	}
+
+	/**
+	 * Copies the elements from the given position up to the given end, out of the given ring,
+	 * to the given array, at their position minus the given offset, wrapped around its length.
+	 */
+	private static void copy(final Object ring, final long from, final long to, final Object target, final long offset) {
+		final int length = Array.getLength(ring);
+		final int targetLength = Array.getLength(target);
+		for (long p = from; p < to; ) {
+			final int i = (int) p & (length - 1);
+			final int j = (int) ((p - offset) % targetLength);
+			final int n = (int) Math.min(to - p, Math.min(length - i, targetLength - j));
+			System.arraycopy(ring, i, target, j, n);
+			p += n;
+		}
+	}
+
+	/**
+	 * Cancels the producer when the given spliterator is no longer reachable, without its stream having been closed.
+	 *
+	 * @return the action which cancels the producer, when the stream is closed
+	 */
+	final Runnable cancelOnClose(final Spliterator<?> spliterator) {
+		final Cleaner.Cleanable cleanable = BufferedStream.CLEANER.register(spliterator, this::cancel);
+		return cleanable::clean;
+	}
+
+	/**
+	 * The spliterator of the buffered stream, of which the buffers of the primitive types only implement the traversal.
+	 */
+	abstract class Values<T, C, S extends Spliterator.OfPrimitive<T, C, S>> implements Spliterator.OfPrimitive<T, C, S> {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public S trySplit() {
+			return (S) PrimitiveBuffer.this.trySplit();
+		}
+
+		@Override
+		public long estimateSize() {
+			return PrimitiveBuffer.this.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return PrimitiveBuffer.this.characteristics();
+		}
+
+		@Override
+		public Comparator<? super T> getComparator() {
+			if (hasCharacteristics(SORTED)) {
+				return null;
+			}
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * A buffer of int values.
+	 */
+	static final class OfInt extends PrimitiveBuffer<int[]> {
+
+		private final IntStream stream;
+		private final Spliterator.OfInt source;
+
+		private OfInt(final IntStream stream, final Spliterator.OfInt source, final int maxSize, final Executor executor) {
+			super(stream, source, maxSize, executor, int[]::new);
+			this.stream = stream;
+			this.source = source;
+		}
+
+		static IntStream buffered(final IntStream stream, final int maxSize, final Executor executor) {
+			final OfInt buffer = new OfInt(stream, stream.isParallel() ? null : stream.spliterator(), maxSize, executor);
+			final Spliterator.OfInt spliterator = buffer.new IntValues();
+			return StreamSupport.intStream(spliterator, false).onClose(buffer.cancelOnClose(spliterator));
+		}
+
+		@Override
+		void drain() {
+			if (null == source) {
+				stream.forEachOrdered(this::push);
+			} else {
+				source.forEachRemaining((IntConsumer) this::push);
+			}
+		}
+
+		private void push(final int value) {
+			final long t = claim();
+			final int[] b = writeBuffer();
+			b[(int) t & (b.length - 1)] = value;
+			publish(t);
+		}
+
+		private int read(final long h) {
+			final int[] b = readBuffer();
+			return b[(int) h & (b.length - 1)];
+		}
+
+		@Override
+		Spliterator.OfInt batch(final int[] values) {
+			return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		private final class IntValues extends Values<Integer, IntConsumer, Spliterator.OfInt> implements Spliterator.OfInt {
+
+			@Override
+			public boolean tryAdvance(final IntConsumer action) {
+				final long h = next();
+				if (h < 0) {
+					return false;
+				}
+				final int value = read(h);
+				consumed(h, 1);
+				action.accept(value);
+				return true;
+			}
+
+			@Override
+			public void forEachRemaining(final IntConsumer action) {
+				for (long h; (h = next()) >= 0; ) {
+					final int value = read(h);
+					consumed(h, 1);
+					action.accept(value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A buffer of long values.
+	 */
+	static final class OfLong extends PrimitiveBuffer<long[]> {
+
+		private final LongStream stream;
+		private final Spliterator.OfLong source;
+
+		private OfLong(final LongStream stream, final Spliterator.OfLong source, final int maxSize, final Executor executor) {
+			super(stream, source, maxSize, executor, long[]::new);
+			this.stream = stream;
+			this.source = source;
+		}
+
+		static LongStream buffered(final LongStream stream, final int maxSize, final Executor executor) {
+			final OfLong buffer = new OfLong(stream, stream.isParallel() ? null : stream.spliterator(), maxSize, executor);
+			final Spliterator.OfLong spliterator = buffer.new LongValues();
+			return StreamSupport.longStream(spliterator, false).onClose(buffer.cancelOnClose(spliterator));
+		}
+
+		@Override
+		void drain() {
+			if (null == source) {
+				stream.forEachOrdered(this::push);
+			} else {
+				source.forEachRemaining((LongConsumer) this::push);
+			}
+		}
+
+		private void push(final long value) {
+			final long t = claim();
+			final long[] b = writeBuffer();
+			b[(int) t & (b.length - 1)] = value;
+			publish(t);
+		}
+
+		private long read(final long h) {
+			final long[] b = readBuffer();
+			return b[(int) h & (b.length - 1)];
+		}
+
+		@Override
+		Spliterator.OfLong batch(final long[] values) {
+			return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		private final class LongValues extends Values<Long, LongConsumer, Spliterator.OfLong> implements Spliterator.OfLong {
+
+			@Override
+			public boolean tryAdvance(final LongConsumer action) {
+				final long h = next();
+				if (h < 0) {
+					return false;
+				}
+				final long value = read(h);
+				consumed(h, 1);
+				action.accept(value);
+				return true;
+			}
+
+			@Override
+			public void forEachRemaining(final LongConsumer action) {
+				for (long h; (h = next()) >= 0; ) {
+					final long value = read(h);
+					consumed(h, 1);
+					action.accept(value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A buffer of double values.
+	 */
+	static final class OfDouble extends PrimitiveBuffer<double[]> {
+
+		private final DoubleStream stream;
+		private final Spliterator.OfDouble source;
+
+		private OfDouble(final DoubleStream stream, final Spliterator.OfDouble source, final int maxSize, final Executor executor) {
+			super(stream, source, maxSize, executor, double[]::new);
+			this.stream = stream;
+			this.source = source;
+		}
+
+		static DoubleStream buffered(final DoubleStream stream, final int maxSize, final Executor executor) {
+			final OfDouble buffer = new OfDouble(stream, stream.isParallel() ? null : stream.spliterator(), maxSize, executor);
+			final Spliterator.OfDouble spliterator = buffer.new DoubleValues();
+			return StreamSupport.doubleStream(spliterator, false).onClose(buffer.cancelOnClose(spliterator));
+		}
+
+		@Override
+		void drain() {
+			if (null == source) {
+				stream.forEachOrdered(this::push);
+			} else {
+				source.forEachRemaining((DoubleConsumer) this::push);
+			}
+		}
+
+		private void push(final double value) {
+			final long t = claim();
+			final double[] b = writeBuffer();
+			b[(int) t & (b.length - 1)] = value;
+			publish(t);
+		}
+
+		private double read(final long h) {
+			final double[] b = readBuffer();
+			return b[(int) h & (b.length - 1)];
+		}
+
+		@Override
+		Spliterator.OfDouble batch(final double[] values) {
+			return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		private final class DoubleValues extends Values<Double, DoubleConsumer, Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+			@Override
+			public boolean tryAdvance(final DoubleConsumer action) {
+				final long h = next();
+				if (h < 0) {
+					return false;
+				}
+				final double value = read(h);
+				consumed(h, 1);
+				action.accept(value);
+				return true;
+			}
+
+			@Override
+			public void forEachRemaining(final DoubleConsumer action) {
+				for (long h; (h = next()) >= 0; ) {
+					final double value = read(h);
+					consumed(h, 1);
+					action.accept(value);
+				}
+			}
+		}
+	}
+
+}
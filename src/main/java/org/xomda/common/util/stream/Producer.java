@@ -0,0 +1,175 @@
+package org.xomda.common.util.stream;
+
+import static org.xomda.common.exception.SneakyThrow.throwSneaky;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.stream.BaseStream;
+
+/**
+ * The lifecycle of a producer, which drains an input stream as a task on an {@link Executor executor},
+ * as shared by the {@link BufferedStream.Iterator iterator} of a {@link BufferedStream}, the {@link PrimitiveBuffer},
+ * the {@link Tee} and the {@link Merge}.
+ * <p>
+ * The producer is handed to the executor once the consumer asks for its first element.
+ * Whatever the producer throws is handed over to the consumer, which rethrows it once it has run out of elements.
+ * When the consumer is no longer interested, it can {@link #cancel() cancel} the producer.
+ */
+abstract class Producer {
+
+	// stops the producer, thrown from within the input stream
+	static final class Cancelled extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private Cancelled() {
+			super(null, null, false, false);
+		}
+	}
+
+	static final Cancelled CANCELLED = new Cancelled();
+
+	private final Executor executor;
+
+	// the producer has been handed to the executor
+	private volatile boolean started;
+
+	// the input stream is finished
+	private volatile boolean done;
+
+	// the consumer is no longer interested in the input stream
+	private volatile boolean cancelled;
+
+	// whatever the producer has thrown, published before done
+	private volatile Throwable failure;
+
+	Producer(final Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+	}
+
+	/**
+	 * Hands the producer over to the given executor, which runs it with {@link #produce(BaseStream, Runnable)}.
+	 */
+	abstract void start(Executor executor);
+
+	/**
+	 * Closes the input stream, when the producer is cancelled before it has been started.
+	 */
+	abstract void closeInput();
+
+	/**
+	 * Wakes up a producer which is waiting for room, when it's cancelled.
+	 */
+	abstract void unblock();
+
+	/**
+	 * Wakes up the consumer, once the input stream is finished, or the producer is cancelled.
+	 */
+	abstract void signalDone();
+
+	/**
+	 * Drains the given input stream with the given action, and closes it.
+	 */
+	final void produce(final BaseStream<?, ?> stream, final Runnable drain) {
+		try (stream) {
+			drain.run();
+		} catch (Cancelled e) {
+			// the consumer is no longer interested
+		} catch (Throwable e) {
+			// handed over to the consumer, instead of to the uncaught exception handler
+			failed(e);
+		} finally {
+			finished();
+		}
+	}
+
+	/**
+	 * Keeps what the producer has thrown, for the consumer to rethrow. Only called by one producer at a time.
+	 */
+	void failed(final Throwable e) {
+		final Throwable f = failure;
+		if (null == f) {
+			failure = e;
+		} else {
+			f.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Marks the input stream as finished, and wakes up the consumer.
+	 */
+	void finished() {
+		done = true;
+		signalDone();
+	}
+
+	final void startIfNeeded() {
+		if (started) {
+			return;
+		}
+		synchronized (this) {
+			if (!started) {
+				start(executor);
+				started = true;
+			}
+		}
+	}
+
+	/**
+	 * Stops the producer, which closes the input stream as soon as it gets to push its next element.
+	 * When the producer hasn't been started yet, the input stream is closed right away.
+	 * <p>
+	 * From then on, the consumer gets no more elements.
+	 */
+	void cancel() {
+		final boolean running;
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+			cancelled = true;
+			running = started;
+			started = true;
+		}
+		try {
+			if (running) {
+				unblock();
+			} else {
+				closeInput();
+			}
+		} finally {
+			if (!running) {
+				done = true;
+			}
+			signalDone();
+		}
+	}
+
+	/**
+	 * Stops the producer from within the input stream, once it has been cancelled.
+	 */
+	final void checkCancelled() {
+		if (cancelled) {
+			throw CANCELLED;
+		}
+	}
+
+	final boolean isDone() {
+		return done;
+	}
+
+	final boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Rethrows whatever the producer has thrown, once the consumer has run out of elements, unless it was cancelled.
+	 */
+	final void rethrowFailure() {
+		final Throwable e = failure;
+		if (null != e && !cancelled) {
+			throwSneaky(e);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package org.xomda.common.util.stream;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of threads on which the producers of {@link BufferedStream buffered streams} can run,
+ * instead of creating a new thread for each one of them.
+ * When all threads are busy, new producers are queued until a thread becomes available.
+ * <p>
+ * Keep in mind that a producer occupies its thread until the input stream is drained.
+ * When the producer waits for room in a bounded cache, or when a consumer itself waits for a producer that is still queued,
+ * the pool can run dry. Don't make the pool smaller than the number of buffered streams that need to be consumed at the same time.
+ */
+public class ProducerPool extends ThreadPoolExecutor {
+
+	/**
+	 * The default maximum number of threads, based on the available processors.
+	 * Producers mostly wait for I/O, so they are allowed to outnumber the processors.
+	 */
+	public final static int DEFAULT_SIZE = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+	private final static long KEEP_ALIVE_SECONDS = 60L;
+
+	private static class SharedHolder {
+		private static final ProducerPool INSTANCE = new ProducerPool(DEFAULT_SIZE);
+	}
+
+	private static class ProducerThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+		private final AtomicInteger threadCount = new AtomicInteger();
+		private final String prefix = "buffered-stream-producer-%s-".formatted(POOL_COUNT.incrementAndGet());
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Creates a pool with the {@link #DEFAULT_SIZE default} maximum number of threads.
+	 */
+	public ProducerPool() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Creates a pool with the given maximum number of threads.
+	 * Idle threads are released after a while, so an unused pool doesn't keep any threads alive.
+	 */
+	public ProducerPool(int maxThreads) {
+		super(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ProducerThreadFactory());
+		allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return the number of producers which are waiting for a thread to become available
+	 */
+	public int getQueuedTaskCount() {
+		return getQueue().size();
+	}
+
+	/**
+	 * @return the (approximate) number of producers which are currently running
+	 */
+	public int getActiveTaskCount() {
+		return getActiveCount();
+	}
+
+	/**
+	 * @return the pool which is shared by all buffered streams that don't need a dedicated pool
+	 */
+	public static ProducerPool shared() {
+		return SharedHolder.INSTANCE;
+	}
+
+}
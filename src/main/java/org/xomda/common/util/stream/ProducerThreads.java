@@ -0,0 +1,34 @@
+package org.xomda.common.util.stream;
+
+import static org.xomda.common.exception.SneakyThrow.throwSneaky;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Provides the threads on which the producers of {@link BufferedStream buffered streams} run,
+ * when no {@link Executor executor} was given.
+ * <p>
+ * Every producer gets a platform thread of its own.
+ * The multi-release jar replaces this class on Java 21 and up, where every producer gets a virtual thread instead.
+ */
+final class ProducerThreads {
+
+	private static final Executor THREAD_PER_TASK = (Runnable runnable) -> newThread(runnable).start();
+
+	/**
+	 * @return an {@link Executor executor} which runs every task on a new thread
+	 */
+	static Executor threadPerTask() {
+		return THREAD_PER_TASK;
+	}
+
+	private static Thread newThread(Runnable runnable) {
+		final Thread thread = new Thread(runnable);
+		thread.setUncaughtExceptionHandler((t, e) -> throwSneaky(e));
+		return thread;
+	}
+
+	private ProducerThreads() {
+	}
+
+}
@@ -0,0 +1,106 @@
+package org.xomda.common.util.stream;
+
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A bounded, lock-free {@link BufferedStream.Cache cache} for exactly one producer and one consumer,
+ * backed by a pre-sized array which is used as a ring.
+ * <p>
+ * The positions of the producer and the consumer are padded apart, so they never share a cache line,
+ * and both sides only read the position of the other side when their own cached copy of it has run out.
+ * When the ring is full, the producer spins for a short while and then parks, until the consumer makes room again.
+ */
+public final class RingBufferCache<T> extends RingBufferPadding implements BufferedStream.Cache<T> {
+
+	public final static int DEFAULT_SIZE = 1024;
+
+	private final static int MAX_SIZE = 1 << 30;
+
+	private final Object[] buffer;
+	private final int mask;
+	private final int limit;
+
+	private final Signal notFull = new Signal(Signal.PRODUCER, this);
+	private final BooleanSupplier hasRoom = this::hasRoom;
+
+	/**
+	 * Creates a ring buffer which holds at most {@link #DEFAULT_SIZE} elements.
+	 */
+	public RingBufferCache() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Creates a ring buffer which holds at most the given number of elements.
+	 */
+	public RingBufferCache(int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("A maximum size below 1 does not make sense");
+		}
+		if (limit > MAX_SIZE) {
+			throw new IllegalArgumentException("A maximum size above %s is not supported".formatted(MAX_SIZE));
+		}
+		final int capacity = limit == 1 ? 1 : Integer.highestOneBit(limit - 1) << 1;
+		this.buffer = new Object[capacity];
+		this.mask = capacity - 1;
+		this.limit = limit;
+	}
+
+	@Override
+	public void put(T value) {
+		Objects.requireNonNull(value);
+		final long t = tail;
+		if (t - headCache >= limit) {
+			headCache = head;
+			if (t - headCache >= limit) {
+				notFull.await(hasRoom);
+				headCache = head;
+			}
+		}
+		buffer[(int) t & mask] = value;
+		tail = t + 1;
+	}
+
+	@Override
+	public T poll() {
+		final long h = head;
+		if (h >= tailCache) {
+			tailCache = tail;
+			if (h >= tailCache) {
+				return null;
+			}
+		}
+		final int index = (int) h & mask;
+		@SuppressWarnings("unchecked")
+		final T value = (T) buffer[index];
+		buffer[index] = null;
+		head = h + 1;
+		notFull.signal();
+		return value;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return head >= tail;
+	}
+
+	/**
+	 * @return the (approximate) number of elements in the ring buffer
+	 */
+	public int size() {
+		return (int) Math.max(0L, tail - head);
+	}
+
+	/**
+	 * @return the maximum number of elements in the ring buffer
+	 */
+	public int limit() {
+		return limit;
+	}
+
+	private boolean hasRoom() {
+		return tail - head < limit;
+	}
+
+}
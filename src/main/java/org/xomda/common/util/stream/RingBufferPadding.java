@@ -0,0 +1,31 @@
+package org.xomda.common.util.stream;
+
+// The positions of the producer and the consumer of a ring, as used by the RingBufferCache and the PrimitiveBuffer.
+// The fields of a superclass are laid out before the fields of its subclass,
+// which keeps the producer fields and the consumer fields on separate cache lines.
+
+abstract class RingBufferProducerPadding {
+	long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class RingBufferProducerFields extends RingBufferProducerPadding {
+	// the next position to write to, only written by the producer
+	volatile long tail;
+	// the last known position of the consumer, only used by the producer
+	long headCache;
+}
+
+abstract class RingBufferConsumerPadding extends RingBufferProducerFields {
+	long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class RingBufferConsumerFields extends RingBufferConsumerPadding {
+	// the next position to read from, only written by the consumer
+	volatile long head;
+	// the last known position of the producer, only used by the consumer
+	long tailCache;
+}
+
+abstract class RingBufferPadding extends RingBufferConsumerFields {
+	long p20, p21, p22, p23, p24, p25, p26, p27;
+}
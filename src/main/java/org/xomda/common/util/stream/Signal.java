@@ -0,0 +1,142 @@
+package org.xomda.common.util.stream;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A wake-up call between two threads, for instance between the producer and the consumer of a {@link BufferedStream}.
+ * The waiting thread first spins for a short while, and then parks until the other thread {@link #signal() signals} it.
+ * The spinning phase adapts itself: it grows when spinning paid off the last time, and shrinks when it didn't.
+ * <p>
+ * Only one thread at a time is supposed to {@link #await(BooleanSupplier) wait} on a signal,
+ * which it can do with a deadline as well.
+ * The state which is checked by the awaited condition has to be published with volatile semantics,
+ * before calling {@link #signal()}, or a wake-up might get lost.
+ * <p>
+ * Every time a thread parks, a {@link BufferedStreamStallEvent} is recorded, when Flight Recorder is enabled.
+ * The event is only touched when the runtime has the jdk.jfr module.
+ */
+final class Signal {
+
+	static final String PRODUCER = "producer";
+	static final String CONSUMER = "consumer";
+
+	// spinning is of no use when there's only one processor to run both threads
+	private static final boolean MULTI_PROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+
+	private static final int MIN_SPINS = 1 << 4;
+	private static final int MAX_SPINS = 1 << 10;
+
+	// Flight Recorder is an optional module, which a trimmed runtime image may leave out
+	private static final boolean RECORDING = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+	static {
+		if (RECORDING) {
+			// the first event takes a while to set up, which would otherwise be added to the first stall
+			BufferedStreamStallEvent.setUp();
+		}
+	}
+
+	// describe the stalls in the recorded events
+	private final String waiting;
+	private final String cache;
+
+	private volatile Thread waiter;
+
+	// only used by the waiting thread, a lost update does no harm
+	private int spins = MIN_SPINS;
+
+	/**
+	 * @param waiting whether the {@link #PRODUCER producer} or the {@link #CONSUMER consumer} waits on this signal
+	 * @param cache the cache which the thread waits on
+	 */
+	Signal(final String waiting, final Object cache) {
+		this.waiting = waiting;
+		this.cache = cache.getClass().getSimpleName();
+	}
+
+	/**
+	 * Blocks the current thread until the given condition is met.
+	 * The thread is not interruptible while waiting, but its interrupted status is restored before returning.
+	 */
+	void await(final BooleanSupplier condition) {
+		await(condition, false, 0L);
+	}
+
+	/**
+	 * Blocks the current thread until the given condition is met, or until the given deadline has passed.
+	 * The thread is not interruptible while waiting, but its interrupted status is restored before returning.
+	 *
+	 * @param deadline the time to give up, in terms of {@link System#nanoTime()}
+	 * @return whether the condition was met
+	 */
+	boolean await(final BooleanSupplier condition, final long deadline) {
+		return await(condition, true, deadline);
+	}
+
+	private boolean await(final BooleanSupplier condition, final boolean timed, final long deadline) {
+		if (condition.getAsBoolean() || spin(condition)) {
+			return true;
+		}
+		final Thread current = Thread.currentThread();
+		final Object event = RECORDING ? BufferedStreamStallEvent.started() : null;
+		boolean interrupted = false;
+		waiter = current;
+		try {
+			while (!condition.getAsBoolean()) {
+				if (!timed) {
+					LockSupport.park(this);
+				} else {
+					final long remaining = deadline - System.nanoTime();
+					if (remaining <= 0L) {
+						return false;
+					}
+					LockSupport.parkNanos(this, remaining);
+				}
+				interrupted |= Thread.interrupted();
+			}
+			return true;
+		} finally {
+			waiter = null;
+			if (interrupted) {
+				current.interrupt();
+			}
+			if (null != event) {
+				BufferedStreamStallEvent.ended(event, waiting, cache);
+			}
+		}
+	}
+
+	/**
+	 * Wakes up the waiting thread, if any.
+	 */
+	void signal() {
+		final Thread current = waiter;
+		if (null != current) {
+			LockSupport.unpark(current);
+		}
+	}
+
+	/**
+	 * @return whether a thread is currently parked (or about to park) on this signal
+	 */
+	boolean hasWaiter() {
+		return null != waiter;
+	}
+
+	private boolean spin(final BooleanSupplier condition) {
+		if (!MULTI_PROCESSOR) {
+			return false;
+		}
+		for (int i = 0; i < spins; i++) {
+			Thread.onSpinWait();
+			if (condition.getAsBoolean()) {
+				spins = Math.min(MAX_SPINS, spins << 1);
+				return true;
+			}
+		}
+		spins = Math.max(MIN_SPINS, spins >> 1);
+		return false;
+	}
+
+}
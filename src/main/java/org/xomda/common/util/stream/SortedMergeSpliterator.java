@@ -0,0 +1,133 @@
+package org.xomda.common.util.stream;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Merges a number of {@link Stream streams} which are each sorted by the same {@link Comparator comparator},
+ * into one sorted stream, with a heap of the next element of every stream.
+ * <p>
+ * The streams are only advanced as far as needed, so it only ever holds on to one element per stream,
+ * and every element takes <code>O(log k)</code> comparisons, for <code>k</code> streams.
+ * Equal elements are served in the order of the streams they come from, so the merge is stable.
+ */
+final class SortedMergeSpliterator<T> implements Spliterator<T> {
+
+	/**
+	 * The next element of one of the streams.
+	 */
+	private static final class Head<T> implements Consumer<T> {
+
+		private final int index;
+		private final Spliterator<? extends T> source;
+		private T value;
+
+		Head(final int index, final Spliterator<? extends T> source) {
+			this.index = index;
+			this.source = source;
+		}
+
+		@Override
+		public void accept(final T value) {
+			this.value = value;
+		}
+
+		/**
+		 * @return false when the stream has run out of elements
+		 */
+		boolean advance() {
+			return source.tryAdvance(this);
+		}
+	}
+
+	private final Comparator<? super T> comparator;
+	private final List<Spliterator<? extends T>> sources;
+	private final PriorityQueue<Head<T>> heads;
+
+	private boolean started;
+
+	SortedMergeSpliterator(final Comparator<? super T> comparator, final List<? extends Stream<? extends T>> streams) {
+		this.comparator = Objects.requireNonNull(comparator);
+		this.sources = new ArrayList<>(streams.size());
+		for (final Stream<? extends T> stream : streams) {
+			sources.add(stream.spliterator());
+		}
+		final Comparator<Head<T>> byValue = (a, b) -> comparator.compare(a.value, b.value);
+		this.heads = new PriorityQueue<>(Math.max(1, sources.size()), byValue.thenComparingInt(h -> h.index));
+	}
+
+	// takes the first element of every stream, once the first element is asked for
+	private void startIfNeeded() {
+		if (started) {
+			return;
+		}
+		started = true;
+		for (int i = 0; i < sources.size(); i++) {
+			final Head<T> head = new Head<>(i, sources.get(i));
+			if (head.advance()) {
+				heads.add(head);
+			}
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super T> action) {
+		startIfNeeded();
+		final Head<T> head = heads.poll();
+		if (null == head) {
+			return false;
+		}
+		final T value = head.value;
+		if (head.advance()) {
+			heads.add(head);
+		} else {
+			head.value = null;
+		}
+		action.accept(value);
+		return true;
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		return null;
+	}
+
+	/**
+	 * @return the sum of the sizes of the streams, or {@link Long#MAX_VALUE} when it's not known
+	 */
+	@Override
+	public long estimateSize() {
+		long size = started ? heads.size() : 0L;
+		for (final Spliterator<? extends T> source : sources) {
+			size += source.estimateSize();
+			if (size < 0) {
+				return Long.MAX_VALUE;
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public int characteristics() {
+		int characteristics = ORDERED | SORTED | SIZED | NONNULL;
+		for (final Spliterator<? extends T> source : sources) {
+			characteristics &= source.characteristics() | ORDERED | SORTED;
+		}
+		return characteristics;
+	}
+
+	/**
+	 * @return the comparator, or null when the elements are sorted in their natural order
+	 */
+	@Override
+	public Comparator<? super T> getComparator() {
+		return comparator == Comparator.naturalOrder() ? null : comparator;
+	}
+
+}
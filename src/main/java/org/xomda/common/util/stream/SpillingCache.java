@@ -0,0 +1,350 @@
+package org.xomda.common.util.stream;
+
+import static org.xomda.common.exception.SneakyThrow.throwSneaky;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link BufferedStream.Cache cache} which keeps a limited number of elements in memory,
+ * and spills the rest of them to temporary files.
+ * This way, a large input stream can still be drained (and closed) as fast as possible, without exhausting the heap.
+ * <p>
+ * Spilled elements are written to segment files, using the given {@link Serializer serializer}, with sequential channel I/O.
+ * A segment is handed over to the consumer once it's full, or when it's {@link #flush() flushed},
+ * and it's deleted as soon as the consumer has read it back.
+ * Once the producer has started spilling, it keeps on spilling until the segment is handed over, so the order is kept.
+ * A consumer which finds the cache empty hands over the segment which is being written itself,
+ * so no element is held back from it while the producer is waiting for its input stream.
+ */
+public class SpillingCache<T> implements BufferedStream.Cache<T> {
+
+	/**
+	 * Writes elements to, and reads them back from a spill file.
+	 */
+	public interface Serializer<T> {
+
+		void write(T value, DataOutput out) throws IOException;
+
+		T read(DataInput in) throws IOException;
+
+		/**
+		 * @return a serializer which uses Java serialization
+		 */
+		static <T extends Serializable> Serializer<T> java() {
+			return new Serializer<>() {
+				@Override
+				public void write(T value, DataOutput out) throws IOException {
+					final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+						oos.writeObject(value);
+					}
+					out.writeInt(bytes.size());
+					out.write(bytes.toByteArray());
+				}
+
+				@Override
+				public T read(DataInput in) throws IOException {
+					final byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+						@SuppressWarnings("unchecked")
+						final T value = (T) ois.readObject();
+						return value;
+					} catch (ClassNotFoundException e) {
+						throw new IOException(e);
+					}
+				}
+			};
+		}
+	}
+
+	public final static int DEFAULT_SEGMENT_SIZE = 1 << 12;
+
+	private final static int IO_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * A spill file, holding a number of consecutive elements.
+	 */
+	private static class Segment implements Closeable {
+
+		private final Path file;
+		private int count;
+		private DataOutputStream out;
+		private DataInputStream in;
+
+		/**
+		 * Opens the given file for writing, and deletes it when that fails.
+		 */
+		Segment(Path file) throws IOException {
+			this.file = file;
+			try {
+				this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+						FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)), IO_BUFFER_SIZE));
+			} catch (IOException | RuntimeException e) {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+				throw e;
+			}
+		}
+
+		void finishWriting() throws IOException {
+			out.close();
+			out = null;
+		}
+
+		void startReading() throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(
+					FileChannel.open(file, StandardOpenOption.READ)), IO_BUFFER_SIZE));
+		}
+
+		@Override
+		public void close() throws IOException {
+			final Closeable o = out;
+			final Closeable i = in;
+			out = null;
+			in = null;
+			try {
+				if (null != o) {
+					o.close();
+				}
+			} finally {
+				try {
+					if (null != i) {
+						i.close();
+					}
+				} finally {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	private final int maxInMemory;
+	private final int segmentSize;
+	private final Serializer<T> serializer;
+	private final Path directory;
+
+	// elements in memory and spilled segments, in FIFO order
+	private final ConcurrentLinkedQueue<Object> entries = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger inMemory = new AtomicInteger();
+	private volatile long spilled;
+	private volatile boolean closed;
+
+	// guards the segment which is being written, which is handed over by either the producer or the consumer
+	private final Object lock = new Object();
+	// only set by the producer
+	private volatile Segment writing;
+
+	// only touched by the consumer
+	private Segment reading;
+
+	/**
+	 * Creates a cache which keeps at most the given number of elements in memory,
+	 * and spills the rest of them to the default temporary-file directory.
+	 */
+	public SpillingCache(int maxInMemory, Serializer<T> serializer) {
+		this(maxInMemory, serializer, null, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates a cache which keeps at most the given number of elements in memory,
+	 * and spills the rest of them to segment files of the given number of elements, in the given directory.
+	 * When the directory is null, the default temporary-file directory is used.
+	 */
+	public SpillingCache(int maxInMemory, Serializer<T> serializer, Path directory, int segmentSize) {
+		if (maxInMemory < 0) {
+			throw new IllegalArgumentException("A negative maximum size does not make sense");
+		}
+		if (segmentSize < 1) {
+			throw new IllegalArgumentException("A segment size below 1 does not make sense");
+		}
+		this.maxInMemory = maxInMemory;
+		this.segmentSize = segmentSize;
+		this.serializer = Objects.requireNonNull(serializer);
+		this.directory = directory;
+	}
+
+	@Override
+	public void put(T value) {
+		Objects.requireNonNull(value);
+		try {
+			if (closed) {
+				discardWriting();
+				return;
+			}
+			// only the producer starts a segment, so the consumer can't make this one go stale
+			if (null == writing && inMemory.get() < maxInMemory) {
+				inMemory.incrementAndGet();
+				entries.offer(value);
+				return;
+			}
+			synchronized (lock) {
+				if (null == writing) {
+					writing = new Segment(null == directory
+							? Files.createTempFile("buffered-stream-", ".spill")
+							: Files.createTempFile(directory, "buffered-stream-", ".spill"));
+				}
+				serializer.write(value, writing.out);
+				writing.count++;
+				spilled++;
+				if (writing.count == segmentSize) {
+					publish();
+				}
+			}
+		} catch (IOException e) {
+			throwSneaky(e);
+		}
+	}
+
+	@Override
+	public void flush() {
+		if (null == writing) {
+			return;
+		}
+		synchronized (lock) {
+			if (null != writing && writing.count > 0) {
+				try {
+					publish();
+				} catch (IOException e) {
+					throwSneaky(e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public T poll() {
+		try {
+			while (true) {
+				if (null != reading) {
+					if (reading.count > 0) {
+						final T value = serializer.read(reading.in);
+						if (--reading.count == 0) {
+							reading.close();
+							reading = null;
+						}
+						return value;
+					}
+					reading.close();
+					reading = null;
+				}
+				final Object entry = entries.poll();
+				if (entry instanceof Segment segment) {
+					segment.startReading();
+					reading = segment;
+				} else {
+					if (null != entry) {
+						inMemory.decrementAndGet();
+					}
+					@SuppressWarnings("unchecked")
+					final T value = (T) entry;
+					return value;
+				}
+			}
+		} catch (IOException e) {
+			throwSneaky(e);
+			return null; // "unreachable"
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		if ((null != reading && reading.count > 0) || !entries.isEmpty()) {
+			return false;
+		}
+		// take whatever the producer has spilled so far, rather than waiting for it to fill the segment
+		flush();
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Deletes all spill files which are left, and discards whatever the producer puts from now on.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		final Segment r = reading;
+		reading = null;
+		try {
+			try {
+				discardEntries();
+			} finally {
+				if (null != r) {
+					r.close();
+				}
+			}
+		} catch (IOException e) {
+			throwSneaky(e);
+		}
+	}
+
+	/**
+	 * @return the number of elements which are currently kept in memory
+	 */
+	public int getInMemoryCount() {
+		return inMemory.get();
+	}
+
+	/**
+	 * @return the total number of elements which have been spilled to disk
+	 */
+	public long getSpilledCount() {
+		return spilled;
+	}
+
+	private void publish() throws IOException {
+		final Segment segment = writing;
+		writing = null;
+		segment.finishWriting();
+		entries.offer(segment);
+		// the cache might have been closed in the meantime
+		if (closed) {
+			discardEntries();
+		}
+	}
+
+	private void discardWriting() throws IOException {
+		if (null == writing) {
+			return;
+		}
+		synchronized (lock) {
+			final Segment w = writing;
+			writing = null;
+			if (null != w) {
+				w.close();
+			}
+		}
+	}
+
+	private void discardEntries() throws IOException {
+		for (Object entry; null != (entry = entries.poll()); ) {
+			if (entry instanceof Segment segment) {
+				segment.close();
+			}
+		}
+	}
+
+}
@@ -1,13 +1,30 @@
 package org.xomda.common.util.stream;
 
+import static org.xomda.common.exception.SneakyThrow.throwSneaky;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -37,9 +54,229 @@ public final class Streams {
 		return new BufferedStream<>(stream, maxStackSize);
 	}
 
+	/**
+	 * Returns a {@link BufferedStream buffered version} of the given {@link Stream stream},
+	 * of which the cache is bounded by the total weight of its elements, as estimated by the given weigher.
+	 *
+	 * @see BufferedStream#BufferedStream(Stream, ToLongFunction, long) BufferedStream(Stream, ToLongFunction, long)
+	 * @see WeightedCache
+	 */
+	public static <T> Stream<T> buffered(Stream<T> stream, ToLongFunction<? super T> weigher, long maxWeight) {
+		return new BufferedStream<>(stream, weigher, maxWeight);
+	}
+
+	/**
+	 * Returns a {@link BufferedStream buffered version} of the given {@link Stream stream},
+	 * using the provided maximum cache size, which hands the elements over in chunks of the given size.
+	 *
+	 * @see BufferedStream#BufferedStream(Stream, int, int) BufferedStream(Stream, int, int)
+	 * @see BufferedStream
+	 */
+	public static <T> Stream<T> buffered(Stream<T> stream, int maxStackSize, int chunkSize) {
+		return new BufferedStream<>(stream, maxStackSize, chunkSize);
+	}
+
+	/**
+	 * Returns a {@link BufferedStream buffered version} of the given {@link Stream stream},
+	 * which keeps at most the given number of elements in memory, and spills the rest to temporary files.
+	 *
+	 * @see BufferedStream#BufferedStream(Stream, int, SpillingCache.Serializer) BufferedStream(Stream, int, Serializer)
+	 * @see SpillingCache
+	 */
+	public static <T> Stream<T> buffered(Stream<T> stream, int maxInMemory, SpillingCache.Serializer<T> serializer) {
+		return new BufferedStream<>(stream, maxInMemory, serializer);
+	}
+
+	/**
+	 * Returns a {@link BufferedStream buffered version} of the given {@link Stream stream},
+	 * of which the input stream is consumed as a task on the given {@link Executor executor}.
+	 *
+	 * @see BufferedStream#BufferedStream(Stream, Executor) BufferedStream(Stream, Executor)
+	 * @see ProducerPool#shared()
+	 */
+	public static <T> Stream<T> buffered(Stream<T> stream, Executor executor) {
+		return new BufferedStream<>(stream, executor);
+	}
+
+	/**
+	 * Returns a {@link BufferedStream buffered version} of the given {@link Stream stream},
+	 * using the provided maximum cache size,
+	 * of which the input stream is consumed as a task on the given {@link Executor executor}.
+	 *
+	 * @see BufferedStream#BufferedStream(Stream, int, Executor) BufferedStream(Stream, int, Executor)
+	 * @see ProducerPool#shared()
+	 */
+	public static <T> Stream<T> buffered(Stream<T> stream, int maxStackSize, Executor executor) {
+		return new BufferedStream<>(stream, maxStackSize, executor);
+	}
+
+	/**
+	 * Returns a buffered version of the given {@link Stream stream}, which serves its elements in batches,
+	 * for instance to write them in bulk. A batch is served as soon as it holds the maximum number of elements,
+	 * or as soon as the maximum linger time has passed since its first element was taken, whichever comes first.
+	 * So under load the batches are full, while a slow input stream still gets its elements served in time.
+	 * <p>
+	 * Like the other buffered streams, the input stream is consumed by a producer of its own, into a {@link RingBufferCache ring buffer},
+	 * and it can't contain null elements. Closing the returned stream stops the producer.
+	 *
+	 * @see #batched(Stream, int, Duration, Executor)
+	 */
+	public static <T> Stream<List<T>> batched(Stream<T> stream, int maxSize, Duration maxLinger) {
+		return batched(stream, maxSize, maxLinger, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Returns a buffered version of the given {@link Stream stream}, which serves its elements in batches,
+	 * of which the input stream is consumed as a task on the given {@link Executor executor}.
+	 *
+	 * @see #batched(Stream, int, Duration)
+	 */
+	public static <T> Stream<List<T>> batched(Stream<T> stream, int maxSize, Duration maxLinger, Executor executor) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("A maximum size below 1 does not make sense");
+		}
+		if (maxLinger.isNegative()) {
+			throw new IllegalArgumentException("A negative linger time does not make sense");
+		}
+		final long maxLingerNanos = maxLinger.compareTo(MAX_LINGER) > 0 ? MAX_LINGER.toNanos() : maxLinger.toNanos();
+		return new BufferedStream.Iterator<>(stream, new RingBufferCache<>(), executor).batched(maxSize, maxLingerNanos);
+	}
+
+	// beyond this, the deadline of a batch would overflow
+	private static final Duration MAX_LINGER = Duration.ofDays(365L);
+
+	/**
+	 * Returns a buffered version of the given {@link IntStream stream}, which buffers the values in a ring of ints,
+	 * so they are never boxed. The ring grows as needed, like the cache of {@link #buffered(Stream)}.
+	 * Closing the returned stream stops the producer.
+	 */
+	public static IntStream buffered(IntStream stream) {
+		return PrimitiveBuffer.OfInt.buffered(stream, PrimitiveBuffer.UNBOUNDED, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Returns a buffered version of the given {@link IntStream stream}, which buffers at most the given number of values
+	 * in a ring of ints, so they are never boxed.
+	 *
+	 * @see #buffered(IntStream)
+	 */
+	public static IntStream buffered(IntStream stream, int maxSize) {
+		return PrimitiveBuffer.OfInt.buffered(stream, maxSize, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Returns a buffered version of the given {@link LongStream stream}, which buffers the values in a ring of longs,
+	 * so they are never boxed. The ring grows as needed, like the cache of {@link #buffered(Stream)}.
+	 * Closing the returned stream stops the producer.
+	 */
+	public static LongStream buffered(LongStream stream) {
+		return PrimitiveBuffer.OfLong.buffered(stream, PrimitiveBuffer.UNBOUNDED, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Returns a buffered version of the given {@link LongStream stream}, which buffers at most the given number of values
+	 * in a ring of longs, so they are never boxed.
+	 *
+	 * @see #buffered(LongStream)
+	 */
+	public static LongStream buffered(LongStream stream, int maxSize) {
+		return PrimitiveBuffer.OfLong.buffered(stream, maxSize, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Returns a buffered version of the given {@link DoubleStream stream}, which buffers the values in a ring of doubles,
+	 * so they are never boxed. The ring grows as needed, like the cache of {@link #buffered(Stream)}.
+	 * Closing the returned stream stops the producer.
+	 */
+	public static DoubleStream buffered(DoubleStream stream) {
+		return PrimitiveBuffer.OfDouble.buffered(stream, PrimitiveBuffer.UNBOUNDED, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Returns a buffered version of the given {@link DoubleStream stream}, which buffers at most the given number of values
+	 * in a ring of doubles, so they are never boxed.
+	 *
+	 * @see #buffered(DoubleStream)
+	 */
+	public static DoubleStream buffered(DoubleStream stream, int maxSize) {
+		return PrimitiveBuffer.OfDouble.buffered(stream, maxSize, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Reads the given {@link Stream stream} only once, and serves its elements to the given number of independent streams.
+	 * The elements are buffered in a ring of the given size, which is shared by all streams,
+	 * and an element is only released once every stream has passed it. So the slowest stream holds back the input stream,
+	 * which means the streams have to be consumed concurrently, unless the whole input stream fits in the ring.
+	 * <p>
+	 * A stream which is closed no longer holds back the others, and once every stream has been closed, the input stream is closed.
+	 * When the input stream fails, every stream rethrows the exception, after the elements which came before.
+	 */
+	public static <T> List<Stream<T>> tee(Stream<T> stream, int count, int maxSize) {
+		return Tee.tee(stream, count, maxSize, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Reads the given {@link Stream stream} only once, and serves its elements to the given number of independent streams,
+	 * sharing a ring of {@link RingBufferCache#DEFAULT_SIZE} elements.
+	 *
+	 * @see #tee(Stream, int, int)
+	 */
+	public static <T> List<Stream<T>> tee(Stream<T> stream, int count) {
+		return tee(stream, count, RingBufferCache.DEFAULT_SIZE);
+	}
+
+	/**
+	 * Maps the elements of the given {@link Stream stream} concurrently, with at most the given number of calls in flight,
+	 * as tasks on the given {@link Executor executor}.
+	 * The results are served in the order of the input stream, which means a slow call holds back the results after it.
+	 * A call only counts as done once its result has been taken by the consumer,
+	 * so the results which are held back are bounded as well.
+	 * <p>
+	 * When a call fails, the exception is rethrown when its result is taken.
+	 * Closing the returned stream stops taking elements from the input stream.
+	 */
+	public static <T, R> Stream<R> mapConcurrent(Stream<T> stream, Function<? super T, ? extends R> mapper, int maxConcurrency, Executor executor) {
+		return ConcurrentMapping.ordered(stream, mapper, maxConcurrency, executor);
+	}
+
+	/**
+	 * Maps the elements of the given {@link Stream stream} concurrently, with at most the given number of calls in flight,
+	 * every call on a thread of its own, which is a virtual thread on Java 21 and up.
+	 *
+	 * @see #mapConcurrent(Stream, Function, int, Executor)
+	 */
+	public static <T, R> Stream<R> mapConcurrent(Stream<T> stream, Function<? super T, ? extends R> mapper, int maxConcurrency) {
+		return mapConcurrent(stream, mapper, maxConcurrency, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Maps the elements of the given {@link Stream stream} concurrently, with at most the given number of calls in flight,
+	 * as tasks on the given {@link Executor executor}.
+	 * The results are served in the order the calls complete, so a slow call doesn't hold back any other results.
+	 *
+	 * @see #mapConcurrent(Stream, Function, int, Executor)
+	 */
+	public static <T, R> Stream<R> mapConcurrentUnordered(Stream<T> stream, Function<? super T, ? extends R> mapper, int maxConcurrency, Executor executor) {
+		return ConcurrentMapping.unordered(stream, mapper, maxConcurrency, executor);
+	}
+
+	/**
+	 * Maps the elements of the given {@link Stream stream} concurrently, with at most the given number of calls in flight,
+	 * every call on a thread of its own, which is a virtual thread on Java 21 and up.
+	 * The results are served in the order the calls complete.
+	 *
+	 * @see #mapConcurrentUnordered(Stream, Function, int, Executor)
+	 */
+	public static <T, R> Stream<R> mapConcurrentUnordered(Stream<T> stream, Function<? super T, ? extends R> mapper, int maxConcurrency) {
+		return mapConcurrentUnordered(stream, mapper, maxConcurrency, ProducerThreads.threadPerTask());
+	}
+
 	/**
 	 * Concatenate multiple {@link Stream streams} into one.
-	 * The internal implementation depends on how many streams are being concatenated.
+	 * The internal implementation depends on how many streams are being concatenated:
+	 * more than two streams are walked through one after the other, instead of nesting them,
+	 * so it doesn't matter how many streams there are.
+	 * Closing the returned stream closes all streams.
 	 */
 	@SafeVarargs
 	public static <T> Stream<T> concat(Stream<T>... streams) {
@@ -49,11 +286,182 @@ public final class Streams {
 		if (streams.length == 1) {
 			return streams[0];
 		}
-		return streams.length == 2
-				? Stream.concat(streams[0], streams[1])
-				: Stream.of(streams)
-						.reduce(Stream::concat)
-						.orElseGet(Stream::empty);
+		if (streams.length == 2) {
+			return Stream.concat(streams[0], streams[1]);
+		}
+		// copied one by one, as handing over the array itself could pollute the heap
+		final List<Stream<T>> sources = new ArrayList<>(streams.length);
+		@SuppressWarnings("unchecked")
+		final Spliterator<T>[] spliterators = (Spliterator<T>[]) new Spliterator<?>[streams.length];
+		boolean parallel = false;
+		for (int i = 0; i < streams.length; i++) {
+			sources.add(streams[i]);
+			spliterators[i] = streams[i].spliterator();
+			parallel |= streams[i].isParallel();
+		}
+		return StreamSupport.stream(new ConcatSpliterator<>(spliterators), parallel)
+				.onClose(() -> closeAll(sources));
+	}
+
+	/**
+	 * Concatenate the {@link Stream streams} which are provided by the given {@link Supplier suppliers} into one.
+	 * A stream is only requested once the previous one has run out of elements, and it's closed as soon as it has,
+	 * so at most one of the streams is open at a time, and nothing is set up before the first element is needed.
+	 * Closing the returned stream closes the stream which is currently open.
+	 */
+	@SafeVarargs
+	public static <T> Stream<T> concatLazy(Supplier<? extends Stream<? extends T>>... streams) {
+		if (null == streams) {
+			return Stream.empty();
+		}
+		// copied one by one, as handing over the array itself could pollute the heap
+		final List<Supplier<? extends Stream<? extends T>>> suppliers = new ArrayList<>(streams.length);
+		for (final Supplier<? extends Stream<? extends T>> supplier : streams) {
+			suppliers.add(Objects.requireNonNull(supplier));
+		}
+		return concatLazy(suppliers);
+	}
+
+	/**
+	 * Concatenate the {@link Stream streams} which are provided by the given {@link Supplier suppliers} into one,
+	 * opening every stream only when it's needed.
+	 *
+	 * @see #concatLazy(Supplier[])
+	 */
+	public static <T> Stream<T> concatLazy(Iterable<? extends Supplier<? extends Stream<? extends T>>> streams) {
+		final LazyConcatSpliterator<T> spliterator = new LazyConcatSpliterator<>(streams.iterator());
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+	}
+
+	/**
+	 * Splits the given {@link Stream stream} into consecutive chunks of the given size, of which the last one can be smaller.
+	 * The chunks are taken lazily, and when the stream knows its size, so does the returned stream, which is then also split in parallel.
+	 *
+	 * @see #chunked(Stream, int, boolean)
+	 */
+	public static <T> Stream<List<T>> chunked(Stream<T> stream, int size) {
+		return chunked(stream, size, false);
+	}
+
+	/**
+	 * Splits the given {@link Stream stream} into consecutive chunks of the given size, of which the last one can be smaller.
+	 * When reused, every chunk is an unmodifiable view on the same buffer, which saves a copy per chunk,
+	 * but which is only valid until the next chunk is asked for, so it should not be held on to.
+	 */
+	public static <T> Stream<List<T>> chunked(Stream<T> stream, int size, boolean reuse) {
+		return StreamSupport.stream(new WindowSpliterator<>(stream.spliterator(), size, size, true, reuse), stream.isParallel())
+				.onClose(stream::close);
+	}
+
+	/**
+	 * Serves the given {@link Stream stream} in sliding windows of the given size, of which a new one starts every given step.
+	 * Only full windows are served, so the elements at the end which don't fill a window are left out,
+	 * and so are the elements between the windows, when the step is larger than the size.
+	 * The windows are taken lazily, and when the stream knows its size, so does the returned stream, which is then also split in parallel.
+	 *
+	 * @see #windowed(Stream, int, int, boolean)
+	 */
+	public static <T> Stream<List<T>> windowed(Stream<T> stream, int size, int step) {
+		return windowed(stream, size, step, false);
+	}
+
+	/**
+	 * Serves the given {@link Stream stream} in sliding windows of the given size, of which a new one starts every given step.
+	 * When reused, every window is an unmodifiable view on the same ring buffer, which saves a copy per window,
+	 * but which is only valid until the next window is asked for, so it should not be held on to.
+	 *
+	 * @see #windowed(Stream, int, int)
+	 */
+	public static <T> Stream<List<T>> windowed(Stream<T> stream, int size, int step, boolean reuse) {
+		return StreamSupport.stream(new WindowSpliterator<>(stream.spliterator(), size, step, false, reuse), stream.isParallel())
+				.onClose(stream::close);
+	}
+
+	/**
+	 * Merges multiple {@link Stream streams} into one, by draining all of them concurrently,
+	 * every stream on a thread of its own, which is a virtual thread on Java 21 and up.
+	 * In contrast to {@link #concat(Stream[]) concat}, the elements are served in the order they arrive,
+	 * so a slow stream doesn't hold back the others.
+	 *
+	 * @see #merge(List, int, Executor)
+	 */
+	@SafeVarargs
+	public static <T> Stream<T> merge(Stream<T>... streams) {
+		if (null == streams || streams.length == 0) {
+			return Stream.empty();
+		}
+		// copied one by one, as handing over the array itself could pollute the heap
+		final List<Stream<T>> sources = new ArrayList<>(streams.length);
+		for (final Stream<T> stream : streams) {
+			sources.add(Objects.requireNonNull(stream));
+		}
+		return merge(sources, RingBufferCache.DEFAULT_SIZE, ProducerThreads.threadPerTask());
+	}
+
+	/**
+	 * Merges multiple {@link Stream streams} into one, by draining all of them concurrently,
+	 * every stream as a task on the given {@link Executor executor}, into a buffer of at most the given size.
+	 * The elements are served in the order they arrive, and every stream blocks while the buffer is full.
+	 * <p>
+	 * When one of the streams fails, the other streams are stopped,
+	 * and the exception is rethrown after the elements which were buffered before.
+	 * Closing the returned stream stops all streams.
+	 */
+	public static <T> Stream<T> merge(List<? extends Stream<? extends T>> streams, int maxSize, Executor executor) {
+		return Merge.merge(streams, maxSize, executor);
+	}
+
+	/**
+	 * Merges multiple {@link Stream streams}, which are each sorted by the given {@link Comparator comparator}, into one sorted stream.
+	 * The streams are consumed lazily, only holding on to the next element of every stream,
+	 * and equal elements are served in the order of the streams they come from.
+	 * The resulting stream is {@link Spliterator#SORTED sorted} by the given comparator,
+	 * but {@link Stream#sorted()} only skips sorting it again when that's the {@link Comparator#naturalOrder() natural order}.
+	 * Closing the returned stream closes all streams.
+	 */
+	@SafeVarargs
+	public static <T> Stream<T> mergeSorted(Comparator<? super T> comparator, Stream<T>... streams) {
+		if (null == streams) {
+			return mergeSorted(comparator, List.of());
+		}
+		// copied one by one, as handing over the array itself could pollute the heap
+		final List<Stream<T>> sources = new ArrayList<>(streams.length);
+		for (final Stream<T> stream : streams) {
+			sources.add(Objects.requireNonNull(stream));
+		}
+		return mergeSorted(comparator, sources);
+	}
+
+	/**
+	 * Merges multiple {@link Stream streams}, which are each sorted by the given {@link Comparator comparator}, into one sorted stream.
+	 *
+	 * @see #mergeSorted(Comparator, Stream[])
+	 */
+	public static <T> Stream<T> mergeSorted(Comparator<? super T> comparator, List<? extends Stream<? extends T>> streams) {
+		final List<? extends Stream<? extends T>> sources = List.copyOf(streams);
+		return StreamSupport.stream(new SortedMergeSpliterator<T>(comparator, sources), false)
+				.onClose(() -> closeAll(sources));
+	}
+
+	/**
+	 * Closes all given streams, even when closing one of them fails.
+	 */
+	static void closeAll(List<? extends Stream<?>> streams) {
+		Throwable failure = null;
+		for (final Stream<?> stream : streams) {
+			try {
+				stream.close();
+			} catch (Throwable e) {
+				if (null == failure) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (null != failure) {
+			throwSneaky(failure);
+		}
 	}
 
 	/**
@@ -64,6 +472,28 @@ public final class Streams {
 		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), parallel);
 	}
 
+	/**
+	 * Create a {@link Stream stream} out of an {@link Iterator iterator}, which is split into batches
+	 * of which the size is decided by the given {@link BatchPolicy batch policy}.
+	 * The size is an estimate of the number of elements, which helps to spread them evenly over the workers
+	 * of a parallel stream, or {@link Long#MAX_VALUE} when it's not known.
+	 *
+	 * @see BatchPolicy#adaptive()
+	 */
+	public static <T> Stream<T> stream(Iterator<T> it, long size, BatchPolicy policy, boolean parallel) {
+		return StreamSupport.stream(new BatchSpliterator<>(it, size, policy, Spliterator.ORDERED), parallel);
+	}
+
+	/**
+	 * Create a {@link Stream stream} out of an {@link Iterator iterator} of an unknown size,
+	 * which is split into batches of which the size is decided by the given {@link BatchPolicy batch policy}.
+	 *
+	 * @see #stream(Iterator, long, BatchPolicy, boolean)
+	 */
+	public static <T> Stream<T> stream(Iterator<T> it, BatchPolicy policy, boolean parallel) {
+		return stream(it, Long.MAX_VALUE, policy, parallel);
+	}
+
 	/**
 	 * Short way to create a sequential {@link Stream stream} out of an {@link Iterator iterator}.
 	 */
@@ -79,6 +509,31 @@ public final class Streams {
 		return StreamSupport.stream(it.spliterator(), parallel);
 	}
 
+	/**
+	 * Create a {@link Stream stream} out of an {@link Iterable iterable}, which is split into batches
+	 * of which the size is decided by the given {@link BatchPolicy batch policy}.
+	 * A {@link Collection collection} knows best how to split itself, so it's streamed as is,
+	 * and the size estimate is only used for other iterables.
+	 *
+	 * @see #stream(Iterator, long, BatchPolicy, boolean)
+	 */
+	public static <T> Stream<T> stream(Iterable<T> it, long size, BatchPolicy policy, boolean parallel) {
+		if (it instanceof Collection<T> collection) {
+			return parallel ? collection.parallelStream() : collection.stream();
+		}
+		return stream(it.iterator(), size, policy, parallel);
+	}
+
+	/**
+	 * Create a {@link Stream stream} out of an {@link Iterable iterable} of an unknown size,
+	 * which is split into batches of which the size is decided by the given {@link BatchPolicy batch policy}.
+	 *
+	 * @see #stream(Iterable, long, BatchPolicy, boolean)
+	 */
+	public static <T> Stream<T> stream(Iterable<T> it, BatchPolicy policy, boolean parallel) {
+		return stream(it, Long.MAX_VALUE, policy, parallel);
+	}
+
 	/**
 	 * Short way to create a sequential {@link Stream stream} out of an {@link Iterable iterable}.
 	 */
@@ -92,7 +547,7 @@ public final class Streams {
 	 * It will run as long as the returned value isn't null, or the parent itself.
 	 */
 	public static <T> Stream<T> cascading(T start, UnaryOperator<T> next) {
-		return stream(new CascadingIterator<>(start, next));
+		return StreamSupport.stream(new CascadingSpliterator<>(start, next), false);
 	}
 
 	/**
@@ -101,34 +556,212 @@ public final class Streams {
 	 * It will run as long as the returned optional isn't empty.
 	 */
 	public static <T> Stream<T> cascading(T start, Function<T, Optional<T>> next) {
-		return stream(new CascadingIterator<>(start, v -> next.apply(v).orElse(null)));
+		return cascading(start, (UnaryOperator<T>) v -> next.apply(v).orElse(null));
+	}
+
+	/**
+	 * Create a cascading stream of indices, starting with the first index,
+	 * proceeding with the outcome of the "next" {@link IntUnaryOperator operator}.
+	 * It will run as long as the returned index isn't negative, or the index itself.
+	 */
+	public static IntStream cascadingInt(int start, IntUnaryOperator next) {
+		return StreamSupport.intStream(new CascadingIntSpliterator(start, next), false);
 	}
 
-	// Helper class for creating s cascading stream
-	private static class CascadingIterator<T> implements Iterator<T> {
-		private final AtomicReference<T> current = new AtomicReference<>();
+	/**
+	 * Create a cascading stream of indices, starting with the first index,
+	 * proceeding with the outcome of the "next" {@link LongUnaryOperator operator}.
+	 * It will run as long as the returned index isn't negative, or the index itself.
+	 */
+	public static LongStream cascadingLong(long start, LongUnaryOperator next) {
+		return StreamSupport.longStream(new CascadingLongSpliterator(start, next), false);
+	}
+
+	/**
+	 * Create a stream of all nodes of a tree, starting with the root,
+	 * of which the children of every node are provided by the given function.
+	 * The nodes are walked through {@link Traversal#DEPTH_FIRST depth first}.
+	 *
+	 * @see #tree(Object, Function, Traversal, int, boolean)
+	 */
+	public static <T> Stream<T> tree(T root, Function<? super T, ? extends Iterable<? extends T>> children) {
+		return tree(root, children, Traversal.DEPTH_FIRST);
+	}
+
+	/**
+	 * Create a stream of all nodes of a tree, starting with the root,
+	 * of which the children of every node are provided by the given function,
+	 * walking through them in the given {@link Traversal order}.
+	 *
+	 * @see #tree(Object, Function, Traversal, int, boolean)
+	 */
+	public static <T> Stream<T> tree(T root, Function<? super T, ? extends Iterable<? extends T>> children, Traversal traversal) {
+		return tree(root, children, traversal, Integer.MAX_VALUE, false);
+	}
+
+	/**
+	 * Create a stream of the nodes of a tree, starting with the root,
+	 * of which the children of every node are provided by the given function,
+	 * walking through them in the given {@link Traversal order}, up to the given depth, where the root is at depth 0.
+	 * When cycles are detected, every node is only visited once, as the visited nodes are kept in an identity set.
+	 * <p>
+	 * When the returned stream is made parallel, a depth first stream splits off subtrees to be walked through by different workers,
+	 * while a breadth first stream splits off the rest of a level. Either way, the stream keeps its order.
+	 */
+	public static <T> Stream<T> tree(T root, Function<? super T, ? extends Iterable<? extends T>> children, Traversal traversal, int maxDepth, boolean detectCycles) {
+		return StreamSupport.stream(TreeSpliterator.of(root, children, traversal, maxDepth, detectCycles), false);
+	}
+
+	// the characteristics of a cascading stream
+	private static final int CASCADING = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+	// Helper class for creating a cascading stream
+	private static final class CascadingSpliterator<T> implements Spliterator<T> {
 		private final UnaryOperator<T> next;
+		private T current;
 
-		CascadingIterator(T start, UnaryOperator<T> next) {
+		CascadingSpliterator(T start, UnaryOperator<T> next) {
 			this.next = next;
-			current.set(start);
+			this.current = start;
 		}
 
 		@Override
-		public synchronized boolean hasNext() {
-			return current.get() != null;
+		public boolean tryAdvance(Consumer<? super T> action) {
+			final T result = current;
+			if (null == result) {
+				return false;
+			}
+			current = null;
+			action.accept(result);
+			final T parent = next.apply(result);
+			current = parent == result ? null : parent;
+			return true;
 		}
 
 		@Override
-		public synchronized T next() {
-			T result = current.getAndUpdate(next);
-			if (null == result) {
-				throw new NoSuchElementException();
+		public void forEachRemaining(Consumer<? super T> action) {
+			T result = current;
+			current = null;
+			while (null != result) {
+				action.accept(result);
+				final T parent = next.apply(result);
+				result = parent == result ? null : parent;
+			}
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return null == current ? 0L : Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return CASCADING;
+		}
+	}
+
+	// Helper class for creating a cascading stream of int indices
+	private static final class CascadingIntSpliterator implements Spliterator.OfInt {
+		private final IntUnaryOperator next;
+		private int current;
+
+		CascadingIntSpliterator(int start, IntUnaryOperator next) {
+			this.next = next;
+			this.current = start;
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			final int result = current;
+			if (result < 0) {
+				return false;
+			}
+			current = -1;
+			action.accept(result);
+			final int parent = next.applyAsInt(result);
+			current = parent == result ? -1 : parent;
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			int result = current;
+			current = -1;
+			while (result >= 0) {
+				action.accept(result);
+				final int parent = next.applyAsInt(result);
+				result = parent == result ? -1 : parent;
 			}
-			if (result == current.get()) {
-				current.set(null);
+		}
+
+		@Override
+		public Spliterator.OfInt trySplit() {
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return current < 0 ? 0L : Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return CASCADING;
+		}
+	}
+
+	// Helper class for creating a cascading stream of long indices
+	private static final class CascadingLongSpliterator implements Spliterator.OfLong {
+		private final LongUnaryOperator next;
+		private long current;
+
+		CascadingLongSpliterator(long start, LongUnaryOperator next) {
+			this.next = next;
+			this.current = start;
+		}
+
+		@Override
+		public boolean tryAdvance(LongConsumer action) {
+			final long result = current;
+			if (result < 0) {
+				return false;
+			}
+			current = -1L;
+			action.accept(result);
+			final long parent = next.applyAsLong(result);
+			current = parent == result ? -1L : parent;
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(LongConsumer action) {
+			long result = current;
+			current = -1L;
+			while (result >= 0) {
+				action.accept(result);
+				final long parent = next.applyAsLong(result);
+				result = parent == result ? -1L : parent;
 			}
-			return result;
+		}
+
+		@Override
+		public Spliterator.OfLong trySplit() {
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return current < 0 ? 0L : Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return CASCADING;
 		}
 	}
 
@@ -0,0 +1,274 @@
+package org.xomda.common.util.stream;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a {@link Stream stream} once, on a producer thread like the one of a {@link BufferedStream},
+ * and serves its elements to a number of independent streams.
+ * <p>
+ * The elements are kept in a bounded ring, which is shared by all streams, and every stream has its own cursor into the ring.
+ * The producer only overwrites an element once every stream has passed it, so the slowest stream holds back the producer.
+ * The elements which have been passed by every stream are released as soon as the producer notices.
+ * A stream which is closed no longer holds back the producer, and once all streams have been closed, the input stream is closed.
+ */
+final class Tee<T> extends Producer {
+
+	private static final int MAX_SIZE = 1 << 30;
+
+	private final Stream<T> stream;
+	private final Spliterator<T> source;
+
+	private final Object[] buffer;
+	private final int mask;
+	private final int limit;
+
+	private final List<Cursor> cursors;
+	private final AtomicInteger open;
+
+	private final Signal notFull = new Signal(Signal.PRODUCER, this);
+	private final BooleanSupplier hasRoom = this::hasRoom;
+
+	// the next position to write to
+	private volatile long tail;
+
+	// the last known position of the slowest cursor, and up to where the ring has been cleared, only used by the producer
+	private long minCache;
+	private long released;
+
+	/**
+	 * @see Streams#tee(Stream, int, int)
+	 */
+	static <T> List<Stream<T>> tee(final Stream<T> stream, final int count, final int maxSize, final Executor executor) {
+		final Tee<T> tee = new Tee<>(stream, count, maxSize, executor);
+		final List<Stream<T>> streams = new ArrayList<>(count);
+		for (final Tee<T>.Cursor cursor : tee.cursors) {
+			streams.add(cursor.stream());
+		}
+		return Collections.unmodifiableList(streams);
+	}
+
+	private Tee(final Stream<T> stream, final int count, final int maxSize, final Executor executor) {
+		super(executor);
+		if (count < 1) {
+			throw new IllegalArgumentException("A number of streams below 1 does not make sense");
+		}
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("A maximum size below 1 does not make sense");
+		}
+		if (maxSize > MAX_SIZE) {
+			throw new IllegalArgumentException("A maximum size above %s is not supported".formatted(MAX_SIZE));
+		}
+		this.stream = Objects.requireNonNull(stream);
+		// a parallel stream is drained with forEachOrdered, so it never pushes from multiple threads at once
+		this.source = stream.isParallel() ? null : stream.spliterator();
+		final int capacity = maxSize == 1 ? 1 : Integer.highestOneBit(maxSize - 1) << 1;
+		this.buffer = new Object[capacity];
+		this.mask = capacity - 1;
+		this.limit = maxSize;
+		final List<Cursor> cursors = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			cursors.add(new Cursor());
+		}
+		this.cursors = List.copyOf(cursors);
+		this.open = new AtomicInteger(count);
+	}
+
+	@Override
+	void start(final Executor executor) {
+		executor.execute(() -> produce(stream, this::drain));
+	}
+
+	private void drain() {
+		if (null == source) {
+			stream.forEachOrdered(this::push);
+		} else {
+			source.forEachRemaining(this::push);
+		}
+	}
+
+	@Override
+	void closeInput() {
+		stream.close();
+	}
+
+	@Override
+	void unblock() {
+		notFull.signal();
+	}
+
+	@Override
+	void signalDone() {
+		for (final Cursor cursor : cursors) {
+			cursor.available.signal();
+		}
+	}
+
+	private void push(final T value) {
+		checkCancelled();
+		final long t = tail;
+		if (t - minCache >= limit) {
+			minCache = release();
+			if (t - minCache >= limit) {
+				notFull.await(hasRoom);
+				checkCancelled();
+				minCache = release();
+			}
+		}
+		buffer[(int) t & mask] = value;
+		tail = t + 1;
+		for (final Cursor cursor : cursors) {
+			if (cursor.available.hasWaiter()) {
+				cursor.available.signal();
+			}
+		}
+	}
+
+	/**
+	 * Clears the elements which have been passed by every open cursor.
+	 *
+	 * @return the position of the slowest open cursor
+	 */
+	private long release() {
+		final long min = min();
+		if (min == Long.MAX_VALUE) {
+			return min;
+		}
+		for (long p = released; p < min; p++) {
+			buffer[(int) p & mask] = null;
+		}
+		released = min;
+		return min;
+	}
+
+	private long min() {
+		long min = Long.MAX_VALUE;
+		for (final Cursor cursor : cursors) {
+			if (!cursor.closed) {
+				min = Math.min(min, cursor.position);
+			}
+		}
+		return min;
+	}
+
+	private boolean hasRoom() {
+		return isCancelled() || tail - min() < limit;
+	}
+
+	/**
+	 * The position of one of the streams in the shared ring.
+	 */
+	private final class Cursor {
+
+		// the next position to read from, only written by the consumer of this cursor
+		private volatile long position;
+		private volatile boolean closed;
+
+		// the last known position of the producer, only used by the consumer
+		private long tailCache;
+
+		private final Signal available = new Signal(Signal.CONSUMER, Tee.this);
+		private final BooleanSupplier isAvailable = this::isAvailable;
+
+		private boolean tryAdvance(final Consumer<? super T> action) {
+			if (closed) {
+				return false;
+			}
+			final long p = position;
+			if (p >= tailCache) {
+				startIfNeeded();
+				tailCache = tail;
+				if (p >= tailCache) {
+					available.await(isAvailable);
+					tailCache = tail;
+					if (p >= tailCache || closed) {
+						exhausted();
+						return false;
+					}
+				}
+			}
+			@SuppressWarnings("unchecked")
+			final T value = (T) buffer[(int) p & mask];
+			position = p + 1;
+			notFull.signal();
+			action.accept(value);
+			return true;
+		}
+
+		private boolean isAvailable() {
+			return isDone() || closed || position < tail;
+		}
+
+		private void exhausted() {
+			if (!closed) {
+				rethrowFailure();
+			}
+		}
+
+		/**
+		 * Stops holding back the producer, and cancels the producer when this was the last open stream.
+		 */
+		private void close() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+			}
+			notFull.signal();
+			available.signal();
+			if (open.decrementAndGet() == 0) {
+				cancel();
+			}
+		}
+
+		private Stream<T> stream() {
+			final Branch<T> spliterator = new Branch<>(this);
+			final Cleaner.Cleanable cleanable = BufferedStream.CLEANER.register(spliterator, this::close);
+			return StreamSupport.stream(spliterator, false).onClose(cleanable::clean);
+		}
+	}
+
+	/**
+	 * The spliterator of one of the streams, which doesn't split.
+	 */
+	private static final class Branch<T> implements Spliterator<T> {
+
+		private final Tee<T>.Cursor cursor;
+
+		Branch(final Tee<T>.Cursor cursor) {
+			this.cursor = cursor;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super T> action) {
+			return cursor.tryAdvance(action);
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED;
+		}
+	}
+
+}
@@ -0,0 +1,20 @@
+package org.xomda.common.util.stream;
+
+/**
+ * The order in which the nodes of a tree are walked through.
+ *
+ * @see Streams#tree(Object, java.util.function.Function, Traversal)
+ */
+public enum Traversal {
+
+	/**
+	 * Every node comes before its children, and its children come before its next sibling.
+	 */
+	DEPTH_FIRST,
+
+	/**
+	 * Every node comes before its children, and all nodes of one level come before the next level.
+	 */
+	BREADTH_FIRST
+
+}
@@ -0,0 +1,282 @@
+package org.xomda.common.util.stream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Walks through a tree, of which the children of every node are provided by a function.
+ * <p>
+ * For parallel streams it splits off subtrees, which are walked through on their own.
+ * The size of a tree isn't known up front, so every split halves the estimated size of both parts,
+ * which makes the fork-join framework stop splitting once there's a subtree for every worker, a couple of times over.
+ * Null children are skipped.
+ */
+abstract class TreeSpliterator<T> implements Spliterator<T> {
+
+	/**
+	 * What's shared by all parts of a split tree.
+	 */
+	private static final class Tree<T> {
+
+		private final Function<? super T, ? extends Iterable<? extends T>> children;
+		private final int maxDepth;
+		// the nodes which have been visited, when cycles are detected
+		private final Set<Object> visited;
+
+		Tree(final Function<? super T, ? extends Iterable<? extends T>> children, final int maxDepth, final boolean detectCycles) {
+			this.children = Objects.requireNonNull(children);
+			this.maxDepth = maxDepth;
+			this.visited = detectCycles ? Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>())) : null;
+		}
+
+		/**
+		 * @return false when the node should be skipped, because it's null or has been visited before
+		 */
+		boolean visit(final T node) {
+			return null != node && (null == visited || visited.add(node));
+		}
+
+		/**
+		 * @return the children of a node at the given depth, or nothing once the maximum depth has been reached
+		 */
+		Iterable<? extends T> children(final T node, final int depth) {
+			if (depth >= maxDepth) {
+				return List.of();
+			}
+			final Iterable<? extends T> result = children.apply(node);
+			return null == result ? List.of() : result;
+		}
+	}
+
+	private static final int NODE = ORDERED | NONNULL | SIZED | SUBSIZED;
+
+	final Tree<T> tree;
+	long estimate;
+
+	TreeSpliterator(final Tree<T> tree, final long estimate) {
+		this.tree = tree;
+		this.estimate = estimate;
+	}
+
+	/**
+	 * @see Streams#tree(Object, Function, Traversal, int, boolean)
+	 */
+	static <T> Spliterator<T> of(final T root, final Function<? super T, ? extends Iterable<? extends T>> children, final Traversal traversal, final int maxDepth, final boolean detectCycles) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("A negative maximum depth does not make sense");
+		}
+		final Tree<T> tree = new Tree<>(children, maxDepth, detectCycles);
+		if (null == root) {
+			return Spliterators.emptySpliterator();
+		}
+		return switch (Objects.requireNonNull(traversal)) {
+			case DEPTH_FIRST -> new DepthFirst<>(tree, root);
+			case BREADTH_FIRST -> new BreadthFirst<>(tree, root);
+		};
+	}
+
+	// a part of a split tree which consists of just one node
+	static <T> Spliterator<T> node(final T node) {
+		return Spliterators.spliterator(new Object[] { node }, NODE);
+	}
+
+	@Override
+	public long estimateSize() {
+		return estimate;
+	}
+
+	/**
+	 * Walks through a tree depth first, with a stack of the spliterators over the children of every level.
+	 */
+	static final class DepthFirst<T> extends TreeSpliterator<T> {
+
+		// the bottom of the stack is first, the spliterator which is walked through is last
+		private final ArrayDeque<Spliterator<? extends T>> levels;
+		// the depth of the nodes at the bottom of the stack
+		private int base;
+
+		private T next;
+		private final Consumer<T> setNext = value -> next = value;
+
+		DepthFirst(final Tree<T> tree, final T root) {
+			this(tree, new ArrayDeque<>(), 0, Long.MAX_VALUE);
+			levels.add(node(root));
+		}
+
+		private DepthFirst(final Tree<T> tree, final ArrayDeque<Spliterator<? extends T>> levels, final int base, final long estimate) {
+			super(tree, estimate);
+			this.levels = levels;
+			this.base = base;
+		}
+
+		// takes the next node which hasn't been visited yet out of the given level
+		private boolean take(final Spliterator<? extends T> level) {
+			while (level.tryAdvance(setNext)) {
+				if (tree.visit(next)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void push(final T node, final int depth) {
+			levels.addLast(tree.children(node, depth).spliterator());
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super T> action) {
+			while (!levels.isEmpty()) {
+				if (!take(levels.getLast())) {
+					levels.removeLast();
+					continue;
+				}
+				final T node = next;
+				next = null;
+				push(node, base + levels.size() - 1);
+				action.accept(node);
+				return true;
+			}
+			estimate = 0L;
+			return false;
+		}
+
+		/**
+		 * Splits off the rest of the subtree which is being walked through, and keeps the remaining siblings at the bottom.
+		 * When there's only one level left, that level is split, or when that's not possible, its next node is split off on its own.
+		 */
+		@Override
+		public Spliterator<T> trySplit() {
+			while (levels.size() > 1 && levels.getFirst().estimateSize() == 0) {
+				levels.removeFirst();
+				base++;
+			}
+			if (levels.isEmpty()) {
+				return null;
+			}
+			if (levels.size() > 1) {
+				final Spliterator<? extends T> bottom = levels.removeFirst();
+				final ArrayDeque<Spliterator<? extends T>> rest = new ArrayDeque<>(levels);
+				levels.clear();
+				levels.add(bottom);
+				return new DepthFirst<>(tree, rest, base + 1, estimate >>>= 1);
+			}
+			final Spliterator<? extends T> split = levels.getFirst().trySplit();
+			if (null != split) {
+				final ArrayDeque<Spliterator<? extends T>> prefix = new ArrayDeque<>();
+				prefix.add(split);
+				return new DepthFirst<>(tree, prefix, base, estimate >>>= 1);
+			}
+			if (!take(levels.getFirst())) {
+				return null;
+			}
+			final T node = next;
+			next = null;
+			push(node, base);
+			return node(node);
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+
+	/**
+	 * Walks through a tree breadth first, level by level.
+	 * It splits off the nodes of the current level, which come before any node of the next level, so the nodes stay in order.
+	 */
+	static final class BreadthFirst<T> extends TreeSpliterator<T> {
+
+		// the nodes of the level which is walked through, and the ones of the next level, which have all been visited
+		private List<T> level;
+		private int index;
+		private List<T> nextLevel = new ArrayList<>();
+		private int depth;
+
+		BreadthFirst(final Tree<T> tree, final T root) {
+			super(tree, Long.MAX_VALUE);
+			this.level = new ArrayList<>(List.of(root));
+			tree.visit(root);
+		}
+
+		// adds the children of the given node to the next level
+		private void expand(final T node) {
+			for (final T child : tree.children(node, depth)) {
+				if (tree.visit(child)) {
+					nextLevel.add(child);
+				}
+			}
+		}
+
+		/**
+		 * @return false when all levels have been walked through
+		 */
+		private boolean hasNode() {
+			if (index < level.size()) {
+				return true;
+			}
+			if (nextLevel.isEmpty()) {
+				return false;
+			}
+			level = nextLevel;
+			nextLevel = new ArrayList<>();
+			index = 0;
+			depth++;
+			return true;
+		}
+
+		private T takeNode() {
+			final T node = level.get(index);
+			level.set(index++, null);
+			expand(node);
+			return node;
+		}
+
+		// the nodes of a split, which has to expand them before they're walked through
+		private Object[] takeLevel() {
+			final Object[] nodes = new Object[level.size() - index];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = takeNode();
+			}
+			return nodes;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super T> action) {
+			if (!hasNode()) {
+				estimate = 0L;
+				return false;
+			}
+			action.accept(takeNode());
+			return true;
+		}
+
+		/**
+		 * Splits off the remaining nodes of the current level, without their subtrees.
+		 * Their children are added to the next level right away, after the children of the nodes before them.
+		 */
+		@Override
+		public Spliterator<T> trySplit() {
+			if (!hasNode()) {
+				return null;
+			}
+			estimate >>>= 1;
+			return Spliterators.spliterator(takeLevel(), NODE);
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package org.xomda.common.util.stream;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link BufferedStream.Cache cache} which is bounded by the total weight of its elements, rather than by their number.
+ * The weight of an element is estimated by a weigher, for example as the number of bytes it retains.
+ * <p>
+ * The producer is blocked as long as adding the next element would exceed the maximum weight.
+ * An element which is heavier than the maximum weight on its own is only let through when the cache is empty.
+ */
+public class WeightedCache<T> implements BufferedStream.Cache<T> {
+
+	private record Entry<T>(T value, long weight) {
+	}
+
+	private final long maxWeight;
+	private final ToLongFunction<? super T> weigher;
+
+	private final ConcurrentLinkedQueue<Entry<T>> entries = new ConcurrentLinkedQueue<>();
+	private final AtomicLong weight = new AtomicLong();
+	private final Signal notFull = new Signal(Signal.PRODUCER, this);
+	private final BooleanSupplier hasRoom = this::hasRoom;
+
+	// only written by the producer
+	private volatile long highWaterMark;
+
+	// the weight of the element which the producer is about to put
+	private long pending;
+
+	/**
+	 * Creates a cache which blocks the producer when the total weight would exceed the given maximum weight.
+	 */
+	public WeightedCache(long maxWeight, ToLongFunction<? super T> weigher) {
+		if (maxWeight < 1) {
+			throw new IllegalArgumentException("A maximum weight below 1 does not make sense");
+		}
+		this.maxWeight = maxWeight;
+		this.weigher = Objects.requireNonNull(weigher);
+	}
+
+	@Override
+	public void put(T value) {
+		Objects.requireNonNull(value);
+		final long w = weigher.applyAsLong(value);
+		if (w < 0) {
+			throw new IllegalArgumentException("The weight of an element cannot be negative: %s".formatted(w));
+		}
+		pending = w;
+		notFull.await(hasRoom);
+		final long current = weight.addAndGet(w);
+		if (current > highWaterMark) {
+			highWaterMark = current;
+		}
+		entries.offer(new Entry<>(value, w));
+	}
+
+	@Override
+	public T poll() {
+		final Entry<T> entry = entries.poll();
+		if (null == entry) {
+			return null;
+		}
+		weight.addAndGet(-entry.weight());
+		notFull.signal();
+		return entry.value();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * @return the current total weight of the elements in the cache
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * @return the highest total weight the cache has ever held
+	 */
+	public long getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * @return the weight from where on the producer is blocked
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	private boolean hasRoom() {
+		final long current = weight.get();
+		return current == 0 || pending <= maxWeight - current;
+	}
+
+}
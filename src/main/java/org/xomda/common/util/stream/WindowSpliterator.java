@@ -0,0 +1,230 @@
+package org.xomda.common.util.stream;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Serves the elements of a {@link Spliterator spliterator} in windows of a fixed size,
+ * of which a new one starts every so many elements, which are collected in a ring.
+ * <p>
+ * The windows are either copies, or a view on the ring, which is reused for every window,
+ * and which is only valid until the next window is asked for.
+ * When the source knows the sizes of the parts it splits into, the windows are split as well:
+ * the elements of the last window of the first part which belong to the second part, are taken from there,
+ * so every part starts at the start of a window.
+ */
+final class WindowSpliterator<T> implements Spliterator<List<T>> {
+
+	private static final Consumer<Object> DROP = value -> {
+	};
+
+	private final Spliterator<? extends T> source;
+	// the elements after the source, which were taken from the part that was split off after this one
+	private final Object[] tail;
+	private int tailIndex;
+	private final int size;
+	private final int step;
+	// whether the last window can be smaller, when the source runs out
+	private final boolean partial;
+	// the view on the ring, when it's reused, or null when every window is a copy
+	private final Window<T> view;
+
+	private final Object[] ring;
+	private int start;
+	private int count;
+	// the elements to drop before the next window starts, when a new window starts after the end of the previous one
+	private int skip;
+
+	private final Consumer<T> add;
+
+	/**
+	 * @see Streams#windowed(java.util.stream.Stream, int, int, boolean)
+	 */
+	WindowSpliterator(final Spliterator<? extends T> source, final int size, final int step, final boolean partial, final boolean reuse) {
+		this(source, size, step, partial, reuse, new Object[checkSize(size, step)], 0, new Object[0]);
+	}
+
+	private WindowSpliterator(final Spliterator<? extends T> source, final int size, final int step, final boolean partial, final boolean reuse, final Object[] ring, final int count, final Object[] tail) {
+		this.source = Objects.requireNonNull(source);
+		this.tail = tail;
+		this.size = size;
+		this.step = step;
+		this.partial = partial;
+		this.view = reuse ? new Window<>(ring, 0, 0) : null;
+		this.ring = ring;
+		this.count = count;
+		this.add = value -> ring[(start + this.count++) % ring.length] = value;
+	}
+
+	private static int checkSize(final int size, final int step) {
+		if (size < 1 || step < 1) {
+			throw new IllegalArgumentException("A window size or step below 1 does not make sense");
+		}
+		return size;
+	}
+
+	// takes the next element out of the source, or out of the tail, once the source has run out
+	private boolean next(final Consumer<? super T> action) {
+		if (source.tryAdvance(action)) {
+			return true;
+		}
+		if (tailIndex < tail.length) {
+			@SuppressWarnings("unchecked")
+			final T value = (T) tail[tailIndex++];
+			action.accept(value);
+			return true;
+		}
+		return false;
+	}
+
+	private boolean skipped() {
+		while (skip > 0) {
+			if (!next(DROP)) {
+				return false;
+			}
+			skip--;
+		}
+		return true;
+	}
+
+	/**
+	 * @return false when there are not enough elements left for another window
+	 */
+	private boolean fill() {
+		while (count < size && next(add)) {
+			// keep filling
+		}
+		return count == size || (partial && count > 0);
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super List<T>> action) {
+		if (!skipped() || !fill()) {
+			return false;
+		}
+		final int n = count;
+		final List<T> window;
+		if (null == view) {
+			final Object[] copy = new Object[n];
+			for (int i = 0; i < n; i++) {
+				copy[i] = ring[(start + i) % size];
+			}
+			window = new Window<>(copy, 0, n);
+		} else {
+			view.offset = start;
+			view.size = n;
+			window = view;
+		}
+		// the elements of the window stay in the ring until the next window is asked for
+		if (step >= n) {
+			start = 0;
+			count = 0;
+			skip = step - n;
+		} else {
+			start = (start + step) % size;
+			count = n - step;
+		}
+		action.accept(window);
+		return true;
+	}
+
+	/**
+	 * Splits the source, when it knows the size of the part which is split off,
+	 * and moves the elements which the last window of that part needs from this part to the tail of that part.
+	 */
+	@Override
+	public Spliterator<List<T>> trySplit() {
+		if (!source.hasCharacteristics(SUBSIZED) || !skipped()) {
+			return null;
+		}
+		final Spliterator<? extends T> prefix = source.trySplit();
+		if (null == prefix) {
+			return null;
+		}
+		final long total = count + prefix.getExactSizeIfKnown();
+		if (total <= 0) {
+			return null;
+		}
+		// the first window of this part starts the gap after the end of the prefix
+		final long lastStart = (total - 1) / step * step;
+		final int extra = (int) Math.max(0L, lastStart + size - total);
+		final int gap = (int) (lastStart + step - total);
+		final Object[] pulled = new Object[Math.max(extra, gap)];
+		final int[] pulledCount = { 0 };
+		while (pulledCount[0] < pulled.length && next(value -> pulled[pulledCount[0]++] = value)) {
+			// keep pulling
+		}
+
+		final Object[] headRing = new Object[size];
+		for (int i = 0; i < count; i++) {
+			headRing[i] = ring[(start + i) % size];
+		}
+		final Object[] headTail = Arrays.copyOf(pulled, Math.min(extra, pulledCount[0]));
+		final Spliterator<List<T>> result = new WindowSpliterator<>(prefix, size, step, partial, null != view, headRing, count, headTail);
+
+		start = 0;
+		count = 0;
+		for (int i = gap; i < pulledCount[0]; i++) {
+			ring[count++] = pulled[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of windows which are left, based on the estimated size of the source
+	 */
+	@Override
+	public long estimateSize() {
+		final long remaining = source.estimateSize();
+		if (remaining == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		final long available = remaining + (tail.length - tailIndex) - skip + count;
+		if (available <= 0) {
+			return 0L;
+		}
+		if (partial) {
+			return (available + step - 1) / step;
+		}
+		return available < size ? 0L : (available - size) / step + 1;
+	}
+
+	@Override
+	public int characteristics() {
+		return (source.characteristics() & (ORDERED | SIZED | SUBSIZED)) | NONNULL;
+	}
+
+	/**
+	 * An unmodifiable list on a part of an array, which can wrap around its end.
+	 */
+	private static final class Window<T> extends AbstractList<T> implements RandomAccess {
+
+		private final Object[] elements;
+		private int offset;
+		private int size;
+
+		Window(final Object[] elements, final int offset, final int size) {
+			this.elements = elements;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(final int index) {
+			Objects.checkIndex(index, size);
+			return (T) elements[(offset + index) % elements.length];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+}
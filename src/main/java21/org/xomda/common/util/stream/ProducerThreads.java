@@ -0,0 +1,31 @@
+package org.xomda.common.util.stream;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides the threads on which the producers of {@link BufferedStream buffered streams} run,
+ * when no {@link Executor executor} was given.
+ * <p>
+ * Every producer gets a virtual thread of its own, so blocking input streams (JDBC cursors, file readers, ...)
+ * can be buffered by the thousands, without occupying an OS thread each.
+ */
+final class ProducerThreads {
+
+	private static final ThreadFactory VIRTUAL_THREADS = Thread.ofVirtual()
+			.name("buffered-stream-producer-", 0)
+			.factory();
+
+	private static final Executor THREAD_PER_TASK = (Runnable runnable) -> VIRTUAL_THREADS.newThread(runnable).start();
+
+	/**
+	 * @return an {@link Executor executor} which runs every task on a new virtual thread
+	 */
+	static Executor threadPerTask() {
+		return THREAD_PER_TASK;
+	}
+
+	private ProducerThreads() {
+	}
+
+}
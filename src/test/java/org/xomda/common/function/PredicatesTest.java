@@ -10,6 +10,8 @@ import static org.xomda.common.function.Predicates.alwaysTrue;
 import static org.xomda.common.function.Predicates.any;
 import static org.xomda.common.function.Predicates.cached;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
@@ -17,6 +19,10 @@ import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 public class PredicatesTest {
 
 	@Test
@@ -90,4 +96,45 @@ public class PredicatesTest {
 		assertEquals(2, counter.get());
 	}
 
+	@Test
+	public void testCachedEvents() throws Exception {
+		Predicate<Integer> p = cached(i -> i % 2 == 0);
+		Path file = Files.createTempFile("cached", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("org.xomda.common.function.CachedPredicate");
+			recording.start();
+			IntStream.range(0, 10).map(i -> i % 4).forEach(p::test);
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			assertEquals(10, events.size());
+			assertEquals(4, events.stream().filter(e -> !e.getBoolean("hit")).count());
+			assertEquals(5, events.stream().filter(e -> e.getBoolean("result")).count());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testCachedEventsEnabledWhileRecording() throws Exception {
+		Predicate<Integer> p = cached(i -> i % 2 == 0);
+		Path file = Files.createTempFile("cached", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.start();
+			IntStream.range(0, 10).forEach(p::test);
+			// the settings of a running recording change, without the state of any recording changing
+			recording.enable("org.xomda.common.function.CachedPredicate");
+			IntStream.range(0, 3).forEach(p::test);
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+					.filter(e -> e.getEventType().getName().equals("org.xomda.common.function.CachedPredicate"))
+					.toList();
+			assertEquals(3, events.size());
+			assertTrue(events.stream().allMatch(e -> e.getBoolean("hit")));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
 }
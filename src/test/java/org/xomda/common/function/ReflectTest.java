@@ -10,6 +10,9 @@ import static org.xomda.common.function.Predicates.testAgainst;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -17,6 +20,10 @@ import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.xomda.common.reflect.Reflect;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 public class ReflectTest {
 
 	@Test
@@ -81,4 +88,27 @@ public class ReflectTest {
 		assertEquals("Hello World", test);
 	}
 
+	@Test
+	public void testFindInvokerEvents() throws Exception {
+		Path file = Files.createTempFile("reflect", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("org.xomda.common.reflect.FindInvoker");
+			recording.enable("org.xomda.common.reflect.Invoke").withThreshold(Duration.ZERO);
+			recording.start();
+			Reflect.findInvoker(TestInvoke.class, "test", String.class)
+					.ifPresent(i -> i.invoke(new TestInvoke(), "World"));
+			Reflect.findInvoker(TestInvoke.class, "missing");
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			assertEquals(2, events.stream().filter(e -> e.getEventType().getName().endsWith("FindInvoker")).count());
+			assertEquals(1, events.stream().filter(e -> e.getEventType().getName().endsWith("FindInvoker") && e.getBoolean("found")).count());
+			RecordedEvent invoke = events.stream().filter(e -> e.getEventType().getName().endsWith("Invoke")).findFirst().orElseThrow();
+			assertEquals("test", invoke.getString("method"));
+			assertFalse(invoke.getBoolean("failed"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
 }
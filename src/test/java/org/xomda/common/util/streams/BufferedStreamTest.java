@@ -1,25 +1,55 @@
 package org.xomda.common.util.streams;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
+import java.util.Iterator;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,8 +57,18 @@ import org.junit.jupiter.api.TestInfo;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.xomda.common.util.stream.BufferedStream;
+import org.xomda.common.util.stream.BufferedStreamMonitor;
+import org.xomda.common.util.stream.BufferedStreamStats;
+import org.xomda.common.util.stream.ProducerPool;
+import org.xomda.common.util.stream.RingBufferCache;
+import org.xomda.common.util.stream.SpillingCache;
+import org.xomda.common.util.stream.Streams;
+import org.xomda.common.util.stream.WeightedCache;
 import org.xomda.test.utils.TimedStream;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+
 @Execution(ExecutionMode.SAME_THREAD)
 class BufferedStreamTest {
 
@@ -229,6 +269,667 @@ class BufferedStreamTest {
 		});
 	}
 
+	@Test
+	void testBlockingCacheSize() {
+		Deque<Integer> cache = BufferedStream.blockingCache(4);
+		cache.add(1);
+		cache.offerFirst(2);
+		cache.push(3);
+		cache.addLast(4);
+		assertEquals(4, cache.size());
+		assertEquals(3, cache.poll());
+		assertTrue(cache.remove(1));
+		assertTrue(cache.removeIf(i -> i == 4));
+		assertEquals(List.of(2), List.copyOf(cache));
+		cache.clear();
+		assertEquals(0, cache.size());
+
+		// the room which was made by all of the above is available to the producer again
+		IntStream.range(0, 4).forEach(cache::push);
+		Iterator<Integer> iterator = cache.descendingIterator();
+		iterator.next();
+		iterator.remove();
+		assertEquals(3, cache.size());
+		cache.push(4);
+		assertEquals(List.of(4, 3, 2, 1), List.copyOf(cache));
+	}
+
+	@Test
+	void testWaitingConsumerDoesNotBurnCpu() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!threads.isCurrentThreadCpuTimeSupported()) {
+			return;
+		}
+		// slow in, fast out: the consumer is waiting most of the time
+		long wallTime = System.nanoTime();
+		long cpuTime = threads.getCurrentThreadCpuTime();
+		assertEquals(20, Streams.buffered(TimedStream.create(20, 20), 4).count());
+		cpuTime = threads.getCurrentThreadCpuTime() - cpuTime;
+		wallTime = System.nanoTime() - wallTime;
+		out.println("consumer cpu: %sms, wall: %sms".formatted(cpuTime / 1_000_000, wallTime / 1_000_000));
+		assertTrue(cpuTime < wallTime / 4);
+	}
+
+	@Test
+	void testWaitingProducerDoesNotBurnCpu() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadCpuTimeSupported()) {
+			return;
+		}
+		// fast in, slow out: the producer is waiting for room most of the time
+		AtomicReference<Thread> producer = new AtomicReference<>();
+		Stream<Integer> in = intStream(64).peek(i -> producer.compareAndSet(null, Thread.currentThread()));
+		IntConsumer waiter = waiter();
+		long wallTime = System.nanoTime();
+		List<String> result = new ArrayList<>();
+		Streams.buffered(in, 4).forEach(i -> {
+			waiter.accept(5);
+			if (i == 32) {
+				long cpuTime = threads.getThreadCpuTime(producer.get().getId());
+				long elapsed = System.nanoTime() - wallTime;
+				result.add("producer cpu: %sms, wall: %sms".formatted(cpuTime / 1_000_000, elapsed / 1_000_000));
+				assertTrue(cpuTime < elapsed / 4);
+			}
+		});
+		out.println(String.join("\n", result));
+		assertEquals(1, result.size());
+	}
+
+	@Test
+	void testProducerPool() {
+		ProducerPool pool = new ProducerPool(2);
+		try {
+			Set<String> threadNames = ConcurrentHashMap.newKeySet();
+			List<Stream<Integer>> streams = IntStream.range(0, 10)
+					.mapToObj(i -> Streams.buffered(intStream(16).peek(x -> threadNames.add(Thread.currentThread().getName())), pool))
+					.toList();
+			streams.forEach(stream -> assertEquals(16, stream.count()));
+			out.println(String.join("\n", threadNames));
+			assertTrue(threadNames.size() <= 2);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testProducerPoolQueue() {
+		ProducerPool pool = new ProducerPool(1);
+		try {
+			// the first producer occupies the only thread, until it's released
+			CountDownLatch release = new CountDownLatch(1);
+			Iterator<Integer> first = Streams.buffered(blockingAfter(19, release), pool).iterator();
+			assertTrue(first.hasNext());
+			assertEquals(1, pool.getActiveTaskCount());
+			// so the second one has to wait in the queue
+			CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> Streams.buffered(intStream(5), pool).count());
+			IntConsumer waiter = waiter();
+			for (long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5); pool.getQueuedTaskCount() == 0 && System.nanoTime() < deadline; ) {
+				waiter.accept(1);
+			}
+			assertEquals(1, pool.getQueuedTaskCount());
+			assertFalse(second.isDone());
+			release.countDown();
+			int count = 0;
+			while (first.hasNext()) {
+				assertNotNull(first.next());
+				count++;
+			}
+			assertEquals(20, count);
+			assertEquals(5L, second.join());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testRingBufferCache() {
+		RingBufferCache<Integer> cache = BufferedStream.ringBufferCache(3);
+		assertEquals(3, cache.limit());
+		assertTrue(cache.isEmpty());
+		assertNull(cache.poll());
+		// wrap around the ring a couple of times
+		for (int i = 0; i < 10; i++) {
+			cache.put(i);
+			cache.put(-i);
+			assertEquals(2, cache.size());
+			assertEquals(i, cache.poll());
+			assertEquals(-i, cache.poll());
+			assertTrue(cache.isEmpty());
+		}
+		assertThrowsExactly(IllegalArgumentException.class, () -> new RingBufferCache<>(0));
+		assertThrowsExactly(NullPointerException.class, () -> cache.put(null));
+	}
+
+	@Test
+	void testRingBufferCacheLimit() {
+		Stream.of(1, 7, 16).forEach(limit -> {
+			int count = limit * 16;
+			RingBufferCache<Integer> cache = BufferedStream.ringBufferCache(limit);
+			Stream<Integer> buffered = new BufferedStream<>(intStream(count).parallel(), cache);
+			IntConsumer waiter = waiter();
+			// Fast in, slow out.
+			List<Integer> result = buffered.peek(i -> {
+				assertFalse(cache.size() > limit);
+				waiter.accept(1);
+				assertFalse(cache.size() > limit);
+			}).toList();
+			assertTrue(cache.isEmpty());
+			assertEquals(intStream(count).toList(), result);
+		});
+	}
+
+	@Test
+	void testWeightedCache() {
+		List<String> expected = IntStream.range(0, 200)
+				.mapToObj(i -> "x".repeat(i % 3 == 0 ? 50 : i % 10))
+				.toList();
+		WeightedCache<String> cache = BufferedStream.weightedCache(100, String::length);
+		IntConsumer waiter = waiter();
+		// Fast in, slow out.
+		List<String> result = new BufferedStream<>(expected.stream(), cache)
+				.peek(s -> {
+					assertTrue(cache.getWeight() <= cache.getMaxWeight());
+					waiter.accept(1);
+				})
+				.toList();
+		assertEquals(expected, result);
+		assertEquals(0, cache.getWeight());
+		assertTrue(cache.getHighWaterMark() > 50);
+		assertTrue(cache.getHighWaterMark() <= 100);
+	}
+
+	@Test
+	void testWeightedCacheHeavyElement() {
+		// an element which is heavier than the maximum weight still gets through, on its own
+		List<String> expected = List.of("a", "b".repeat(200), "c", "d".repeat(300));
+		WeightedCache<String> cache = BufferedStream.weightedCache(100, String::length);
+		assertEquals(expected, new BufferedStream<>(expected.stream(), cache).toList());
+		assertEquals(300, cache.getHighWaterMark());
+		assertEquals(expected, Streams.buffered(expected.stream(), String::length, 10).toList());
+		assertThrowsExactly(IllegalArgumentException.class, () -> BufferedStream.weightedCache(0, String::length));
+	}
+
+	@Test
+	void testSpillingCache() throws IOException {
+		Path directory = Files.createTempDirectory("spill");
+		try {
+			SpillingCache<Integer> cache = new SpillingCache<>(10, INT_SERIALIZER, directory, 16);
+			List<Integer> expected = intStream(1_000).toList();
+			// a slow consumer makes the producer spill most of the elements
+			IntConsumer waiter = waiter();
+			List<Integer> result = new BufferedStream<>(intStream(1_000), cache)
+					.peek(i -> {
+						if (i % 100 == 0) {
+							waiter.accept(10);
+						}
+					})
+					.toList();
+			assertEquals(expected, result);
+			assertTrue(cache.getSpilledCount() > 0);
+			assertEquals(0, cache.getInMemoryCount());
+			try (Stream<Path> files = Files.list(directory)) {
+				assertEquals(0L, files.count());
+			}
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	void testSpillingCacheJavaSerializer() {
+		List<String> expected = IntStream.range(0, 5_000).mapToObj(Integer::toString).toList();
+		assertEquals(expected, Streams.buffered(expected.stream(), 100, SpillingCache.Serializer.<String>java()).toList());
+	}
+
+	@Test
+	void testSpillingCacheBlockingIn() throws Exception {
+		// the input stream blocks halfway a segment, which a waiting consumer gets nevertheless
+		Path directory = Files.createTempDirectory("spill");
+		try {
+			for (int n = 1; n <= 40; n += 3) {
+				CountDownLatch release = new CountDownLatch(1);
+				SpillingCache<Integer> cache = new SpillingCache<>(0, INT_SERIALIZER, directory, 16);
+				Iterator<Integer> it = new BufferedStream<>(blockingAfter(n, release), cache).iterator();
+				int count = n;
+				CompletableFuture<List<Integer>> first = CompletableFuture.supplyAsync(() -> {
+					List<Integer> result = new ArrayList<>();
+					while (result.size() < count) {
+						result.add(it.next());
+					}
+					return result;
+				});
+				assertEquals(IntStream.range(0, n).boxed().toList(), first.get(5, TimeUnit.SECONDS));
+				release.countDown();
+				assertEquals(n, it.next());
+				assertFalse(it.hasNext());
+				assertFalse(hasFiles(directory));
+			}
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	void testSpillingCacheClose() throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("spill");
+		try {
+			SpillingCache<Integer> cache = new SpillingCache<>(0, INT_SERIALIZER, directory, 16);
+			try (Stream<Integer> stream = new BufferedStream<>(intStream(10_000), cache)) {
+				assertEquals(5, stream.limit(5).count());
+			}
+			// whatever the producer still puts after closing is discarded
+			for (int i = 0; i < 100 && hasFiles(directory); i++) {
+				Thread.sleep(50);
+			}
+			assertFalse(hasFiles(directory));
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	void testCancelOnClose() throws InterruptedException {
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		AtomicLong pulled = new AtomicLong();
+		try (Stream<Integer> stream = Streams.buffered(endless(pulled, closed), 16)) {
+			assertEquals(0, stream.iterator().next());
+		}
+		awaitClosed(closed);
+		long count = pulled.get();
+		Thread.sleep(50);
+		assertEquals(count, pulled.get());
+	}
+
+	@Test
+	void testCancelBeforeStart() {
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		Streams.buffered(endless(new AtomicLong(), closed)).close();
+		// the input stream is closed right away, as there's no producer
+		assertTrue(closed.isDone());
+	}
+
+	@Test
+	void testCancelOnShortCircuit() throws InterruptedException {
+		CompletableFuture<Void> first = new CompletableFuture<>();
+		assertEquals(Optional.of(0), Streams.buffered(endless(new AtomicLong(), first)).findFirst());
+		awaitClosed(first);
+
+		CompletableFuture<Void> match = new CompletableFuture<>();
+		assertTrue(Streams.buffered(endless(new AtomicLong(), match), 16).anyMatch(i -> i == 100));
+		awaitClosed(match);
+
+		CompletableFuture<Void> limited = new CompletableFuture<>();
+		assertEquals(List.of(0, 1, 2, 3, 4), Streams.buffered(endless(new AtomicLong(), limited), 16).limit(5).toList());
+		awaitClosed(limited);
+
+		CompletableFuture<Void> parallel = new CompletableFuture<>();
+		assertEquals(1000L, Streams.buffered(endless(new AtomicLong(), parallel)).limit(1000).parallel().count());
+		awaitClosed(parallel);
+	}
+
+	@Test
+	void testProducerFailure() {
+		Stream<Integer> failing = Stream.of(1, 2, 3, 4).map(i -> {
+			if (i == 4) {
+				throw new IllegalStateException("failing input");
+			}
+			return i;
+		});
+		// the elements which came before the failure are served first
+		Iterator<Integer> it = Streams.buffered(failing).iterator();
+		List<Integer> result = new ArrayList<>();
+		IllegalStateException e = assertThrowsExactly(IllegalStateException.class, () -> it.forEachRemaining(result::add));
+		assertEquals("failing input", e.getMessage());
+		assertEquals(List.of(1, 2, 3), result);
+		assertThrowsExactly(IllegalStateException.class, it::hasNext);
+
+		assertThrowsExactly(UncheckedIOException.class, () -> Streams.buffered(Stream.of(1).peek(i -> {
+			throw new UncheckedIOException(new IOException("failing input"));
+		})).toList());
+	}
+
+	@Test
+	void testMonitor() throws Exception {
+		assertNull(new BufferedStream<>(intStream(10)).getStats());
+		BufferedStreamMonitor.enable();
+		try {
+			BufferedStreamMonitor monitor = BufferedStreamMonitor.getInstance();
+			BufferedStream<Integer> buffered = new BufferedStream<>(intStream(100), 10);
+			BufferedStreamStats stats = buffered.getStats();
+			assertNotNull(stats);
+			assertEquals("RingBufferCache", stats.getCache());
+
+			Iterator<Integer> it = buffered.iterator();
+			for (int i = 0; i < 50; i++) {
+				it.next();
+			}
+			assertEquals(50L, stats.getConsumedCount());
+			assertTrue(stats.getPeakDepth() > 0);
+			assertTrue(monitor.getStreams().contains(stats));
+
+			// the same numbers, through JMX
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(BufferedStreamMonitor.OBJECT_NAME);
+			assertTrue((Integer) server.getAttribute(name, "LiveStreamCount") >= 1);
+			assertTrue((Long) server.getAttribute(name, "ConsumedCount") >= 50);
+			assertTrue(((CompositeData[]) server.getAttribute(name, "Streams")).length >= 1);
+
+			it.forEachRemaining(i -> waiter().accept(1));
+			assertEquals(100L, stats.getProducedCount());
+			assertEquals(100L, stats.getConsumedCount());
+			assertFalse(stats.isProducerActive());
+			assertFalse(monitor.getStreams().contains(stats));
+		} finally {
+			BufferedStreamMonitor.disable();
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(BufferedStreamMonitor.OBJECT_NAME)));
+	}
+
+	@Test
+	void testStallEvents() throws Exception {
+		Path file = Files.createTempFile("stall", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("org.xomda.common.stream.BufferedStreamStall").withThreshold(Duration.ofMillis(5));
+			recording.start();
+			// a slow producer stalls the consumer, and a slow consumer stalls the producer
+			assertEquals(5, Streams.buffered(TimedStream.create(20, 5), 2).toList().size());
+			IntConsumer waiter = waiter();
+			assertEquals(10, Streams.buffered(intStream(10), 2).peek(i -> waiter.accept(20)).toList().size());
+			recording.stop();
+			recording.dump(file);
+			Set<String> waiting = RecordingFile.readAllEvents(file).stream()
+					.filter(e -> "RingBufferCache".equals(e.getString("cache")))
+					.map(e -> e.getString("waiting"))
+					.collect(Collectors.toSet());
+			assertEquals(Set.of("producer", "consumer"), waiting);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testBufferedIntStream() {
+		// the unbounded ring has to grow a couple of times
+		int[] expected = IntStream.range(0, 100_000).toArray();
+		assertArrayEquals(expected, Streams.buffered(IntStream.range(0, 100_000)).toArray());
+		assertArrayEquals(expected, Streams.buffered(IntStream.range(0, 100_000), 5).toArray());
+		IntConsumer waiter = waiter();
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, Streams.buffered(IntStream.range(0, 5), 2).peek(i -> waiter.accept(10)).toArray());
+		assertEquals(4_999_950_000L, Streams.buffered(IntStream.range(0, 100_000).parallel(), 64).parallel().asLongStream().sum());
+	}
+
+	@Test
+	void testBufferedLongAndDoubleStream() {
+		assertArrayEquals(LongStream.range(0, 10_000).toArray(), Streams.buffered(LongStream.range(0, 10_000)).toArray());
+		assertArrayEquals(LongStream.range(0, 10_000).toArray(), Streams.buffered(LongStream.range(0, 10_000), 16).toArray());
+		double[] expected = IntStream.range(0, 10_000).mapToDouble(i -> i / 2d).toArray();
+		assertArrayEquals(expected, Streams.buffered(DoubleStream.of(expected)).toArray());
+		assertArrayEquals(expected, Streams.buffered(DoubleStream.of(expected), 16).toArray());
+	}
+
+	@Test
+	void testBufferedPrimitiveStreamFailure() {
+		IntStream failing = IntStream.range(0, 4).map(i -> {
+			if (i == 3) {
+				throw new IllegalStateException("failing input");
+			}
+			return i;
+		});
+		PrimitiveIterator.OfInt it = Streams.buffered(failing).iterator();
+		assertEquals(0, it.nextInt());
+		assertEquals(1, it.nextInt());
+		assertEquals(2, it.nextInt());
+		assertThrowsExactly(IllegalStateException.class, it::hasNext);
+	}
+
+	@Test
+	void testBufferedPrimitiveStreamCancel() {
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		AtomicLong pulled = new AtomicLong();
+		IntStream endless = IntStream.iterate(0, i -> i + 1).peek(i -> pulled.incrementAndGet()).onClose(() -> closed.complete(null));
+		try (IntStream buffered = Streams.buffered(endless, 16)) {
+			assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, buffered.limit(5).toArray());
+		}
+		awaitClosed(closed);
+		// the producer was blocked on the full ring
+		assertTrue(pulled.get() < 100);
+
+		CompletableFuture<Void> notStarted = new CompletableFuture<>();
+		Streams.buffered(LongStream.range(0, 10).onClose(() -> notStarted.complete(null))).close();
+		assertTrue(notStarted.isDone());
+	}
+
+	@Test
+	void testBatched() {
+		// a fast input stream fills every batch, and the last one is served as soon as the input stream is done
+		List<List<Integer>> batches = Streams.batched(range(1_000), 100, Duration.ofMinutes(1)).toList();
+		assertEquals(10, batches.size());
+		assertTrue(batches.stream().allMatch(batch -> batch.size() == 100));
+		assertEquals(IntStream.range(0, 1_000).boxed().toList(), batches.stream().flatMap(List::stream).toList());
+
+		assertEquals(List.of(List.of(0, 1, 2), List.of(3, 4)), Streams.batched(range(5), 3, Duration.ofMinutes(1)).toList());
+		assertThrowsExactly(IllegalArgumentException.class, () -> Streams.batched(range(5), 0, Duration.ZERO));
+		assertThrowsExactly(IllegalArgumentException.class, () -> Streams.batched(range(5), 1, Duration.ofMillis(-1)));
+	}
+
+	@Test
+	void testBatchedLinger() {
+		// a stalled input stream doesn't hold back its elements for longer than the linger time:
+		// it only goes on once the first batch has been served, which is then never full
+		CountDownLatch served = new CountDownLatch(1);
+		Stream<Integer> stalled = range(10).peek(i -> {
+			if (i == 3) {
+				try {
+					if (!served.await(5, TimeUnit.SECONDS)) {
+						throw new IllegalStateException("not served within the linger time");
+					}
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		List<List<Integer>> batches = Streams.batched(stalled, 100, Duration.ofMillis(50))
+				.peek(batch -> served.countDown())
+				.toList();
+		assertEquals(IntStream.range(0, 10).boxed().toList(), batches.stream().flatMap(List::stream).toList());
+		assertTrue(batches.size() > 1, batches::toString);
+		assertTrue(batches.get(0).size() <= 3, batches::toString);
+	}
+
+	@Test
+	void testBatchedFailure() {
+		Stream<Integer> failing = range(10).peek(i -> {
+			if (i == 5) {
+				throw new IllegalStateException("failed");
+			}
+		});
+		List<Integer> received = new ArrayList<>();
+		assertThrowsExactly(IllegalStateException.class, () -> Streams.batched(failing, 3, Duration.ofSeconds(1)).forEach(received::addAll));
+		// the elements before the failure are still served
+		assertEquals(List.of(0, 1, 2, 3, 4), received);
+	}
+
+	@Test
+	void testBatchedClose() {
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		AtomicLong pulled = new AtomicLong();
+		try (Stream<List<Integer>> batches = Streams.batched(endless(pulled, closed), 10, Duration.ofSeconds(1))) {
+			assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), batches.findFirst().orElseThrow());
+		}
+		awaitClosed(closed);
+	}
+
+	private static Stream<Integer> endless(AtomicLong pulled, CompletableFuture<Void> closed) {
+		return Stream.iterate(0, i -> i + 1)
+				.peek(i -> pulled.incrementAndGet())
+				.onClose(() -> closed.complete(null));
+	}
+
+	private static void awaitClosed(CompletableFuture<Void> closed) {
+		try {
+			closed.get(5, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			fail("The input stream has not been closed", e);
+		}
+	}
+
+	private static boolean hasFiles(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.findAny().isPresent();
+		}
+	}
+
+	private static final SpillingCache.Serializer<Integer> INT_SERIALIZER = new SpillingCache.Serializer<>() {
+		@Override
+		public void write(Integer value, DataOutput out) throws IOException {
+			out.writeInt(value);
+		}
+
+		@Override
+		public Integer read(DataInput in) throws IOException {
+			return in.readInt();
+		}
+	};
+
+	@Test
+	void testChunked() {
+		List<Integer> expected = intStream(10_000).toList();
+		// unbounded and bounded, with chunks which do and don't fit the input
+		Stream.of(
+				new int[] { Integer.MAX_VALUE, 64 },
+				new int[] { 256, 64 },
+				new int[] { 100, 7 },
+				new int[] { 1, 1 }
+		).forEach(config -> assertEquals(expected, Streams.buffered(intStream(10_000), config[0], config[1]).toList()));
+	}
+
+	@Test
+	void testChunkedBlockingIn() throws Exception {
+		// the input stream blocks after some elements, which a waiting consumer gets nevertheless
+		for (int n = 1; n <= 100; n++) {
+			CountDownLatch release = new CountDownLatch(1);
+			Iterator<Integer> it = Streams.buffered(blockingAfter(n, release), 64, 16).iterator();
+			int count = n;
+			CompletableFuture<List<Integer>> first = CompletableFuture.supplyAsync(() -> {
+				List<Integer> result = new ArrayList<>();
+				while (result.size() < count) {
+					result.add(it.next());
+				}
+				return result;
+			});
+			assertEquals(IntStream.range(0, n).boxed().toList(), first.get(5, TimeUnit.SECONDS));
+			release.countDown();
+			assertEquals(n, it.next());
+			assertFalse(it.hasNext());
+		}
+	}
+
+	// provides the given number of elements, and then blocks until it's released, before providing the last one
+	private static Stream<Integer> blockingAfter(int n, CountDownLatch release) {
+		return IntStream.rangeClosed(0, n).boxed().peek(i -> {
+			if (i == n) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+	}
+
+	@Test
+	void testSpliterator() {
+		Spliterator<Integer> spliterator = Streams.buffered(Stream.of(3, 2, 1)).spliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(3, spliterator.getExactSizeIfKnown());
+		assertTrue(spliterator.tryAdvance(i -> assertEquals(3, i)));
+		assertEquals(2, spliterator.getExactSizeIfKnown());
+		List<Integer> rest = new ArrayList<>();
+		spliterator.forEachRemaining(rest::add);
+		assertEquals(List.of(2, 1), rest);
+		assertEquals(0, spliterator.getExactSizeIfKnown());
+		assertFalse(spliterator.tryAdvance(i -> fail()));
+
+		// the sort order is passed on
+		Spliterator<Integer> sorted = Streams.buffered(Stream.of(3, 1, 2).sorted()).spliterator();
+		assertTrue(sorted.hasCharacteristics(Spliterator.SORTED));
+		assertNull(sorted.getComparator());
+
+		// unknown size
+		Spliterator<Integer> unknown = Streams.buffered(intStream(10)).spliterator();
+		assertFalse(unknown.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(-1, unknown.getExactSizeIfKnown());
+	}
+
+	@Test
+	void testTrySplit() {
+		Stream<Integer> in = IntStream.range(0, 1000).boxed();
+		Spliterator<Integer> spliterator = Streams.buffered(in).spliterator();
+		List<Integer> result = new ArrayList<>();
+		int splits = 0;
+		for (Spliterator<Integer> batch; null != (batch = spliterator.trySplit()); splits++) {
+			assertTrue(batch.hasCharacteristics(Spliterator.SIZED));
+			assertTrue(batch.getExactSizeIfKnown() > 0);
+			batch.forEachRemaining(result::add);
+		}
+		assertTrue(splits > 1);
+		assertEquals(0, spliterator.getExactSizeIfKnown());
+		assertEquals(IntStream.range(0, 1000).boxed().toList(), result);
+	}
+
+	@Test
+	void testParallelConsumer() {
+		// once the input stream is closed, all of its elements are in the cache
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		Stream<Integer> in = IntStream.range(0, 1000).boxed().onClose(() -> closed.complete(null));
+		Spliterator<Integer> spliterator = Streams.buffered(in, 1000).spliterator();
+		List<Integer> result = new ArrayList<>();
+		assertTrue(spliterator.tryAdvance(result::add));
+		awaitClosed(closed);
+
+		// the batches start small, and grow with every split
+		Spliterator<Integer> batch = spliterator.trySplit();
+		assertNotNull(batch);
+		assertEquals(16L, batch.getExactSizeIfKnown());
+		batch.forEachRemaining(result::add);
+		batch = spliterator.trySplit();
+		assertNotNull(batch);
+		assertEquals(32L, batch.getExactSizeIfKnown());
+		batch.forEachRemaining(result::add);
+		spliterator.forEachRemaining(result::add);
+		assertEquals(IntStream.range(0, 1000).boxed().toList(), result);
+
+		assertEquals(intStream(10_000).map(i -> i * 2).toList(), Streams.buffered(intStream(10_000), 256)
+				.parallel()
+				.map(i -> i * 2)
+				.toList());
+	}
+
+	@Test
+	void testSized() {
+		Stream<Integer> in = IntStream.range(0, 10_000).boxed();
+		Integer[] result = Streams.buffered(in, 64).toArray(Integer[]::new);
+		assertEquals(10_000, result.length);
+		for (int i = 0; i < result.length; i++) {
+			assertEquals(i, result[i]);
+		}
+	}
+
+	@Test
+	void testDefaultProducerThread() throws ReflectiveOperationException {
+		AtomicReference<Thread> producer = new AtomicReference<>();
+		assertEquals(4, Streams.buffered(intStream(4).peek(i -> producer.set(Thread.currentThread()))).count());
+		assertNotNull(producer.get());
+		assertNotSame(Thread.currentThread(), producer.get());
+		if (Runtime.version().feature() >= 21) {
+			// the multi-release jar runs the producers on virtual threads
+			boolean fromJar = BufferedStream.class.getProtectionDomain().getCodeSource().getLocation().getPath().endsWith(".jar");
+			assertEquals(fromJar, Thread.class.getMethod("isVirtual").invoke(producer.get()));
+		}
+	}
+
 	private static IntConsumer waiter() {
 		Object lock = new Object();
 		return (int amount) -> {
@@ -259,6 +960,10 @@ class BufferedStreamTest {
 		return new BufferedStream.DefaultCache<>();
 	}
 
+	private static Stream<Integer> range(int count) {
+		return IntStream.range(0, count).boxed();
+	}
+
 	private static Stream<Integer> intStream(int count) {
 		return IntStream
 				.iterate(count - 1, i -> --i)
@@ -1,18 +1,55 @@
 package org.xomda.common.util.streams;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.xomda.common.util.stream.Streams.cascading;
+import static org.xomda.common.util.stream.Streams.cascadingInt;
+import static org.xomda.common.util.stream.Streams.cascadingLong;
+import static org.xomda.common.util.stream.Streams.chunked;
 import static org.xomda.common.util.stream.Streams.concat;
+import static org.xomda.common.util.stream.Streams.concatLazy;
+import static org.xomda.common.util.stream.Streams.mapConcurrent;
+import static org.xomda.common.util.stream.Streams.mapConcurrentUnordered;
+import static org.xomda.common.util.stream.Streams.merge;
+import static org.xomda.common.util.stream.Streams.mergeSorted;
+import static org.xomda.common.util.stream.Streams.stream;
+import static org.xomda.common.util.stream.Streams.tee;
+import static org.xomda.common.util.stream.Streams.tree;
+import static org.xomda.common.util.stream.Streams.windowed;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.junit.jupiter.api.Test;
+import org.xomda.common.util.stream.BatchPolicy;
+import org.xomda.common.util.stream.Traversal;
 
 public class StreamsTest {
 
@@ -34,6 +71,215 @@ public class StreamsTest {
 		assertEquals("abcdefghij", concatAll(ab, cd, ef, gh, ij));
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConcatMany() {
+		// deeply nested concatenations would overflow the stack
+		Stream<Integer>[] streams = IntStream.range(0, 100_000).mapToObj(Stream::of).toArray(Stream[]::new);
+		Spliterator<Integer> spliterator = concat(streams).spliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(100_000L, spliterator.getExactSizeIfKnown());
+
+		streams = IntStream.range(0, 100_000).mapToObj(Stream::of).toArray(Stream[]::new);
+		assertEquals(IntStream.range(0, 100_000).boxed().toList(), concat(streams).toList());
+
+		streams = IntStream.range(0, 10_000).mapToObj(i -> IntStream.range(0, 10).boxed()).toArray(Stream[]::new);
+		assertEquals(450_000L, concat(streams).parallel().mapToLong(i -> i).sum());
+
+		AtomicInteger closed = new AtomicInteger();
+		streams = IntStream.range(0, 5).mapToObj(i -> Stream.of(i).onClose(closed::incrementAndGet)).toArray(Stream[]::new);
+		concat(streams).close();
+		assertEquals(5, closed.get());
+	}
+
+	@Test
+	public void testConcatSplitLastSource() {
+		// the last source is no longer SUBSIZED once it has been split
+		Spliterator<Integer> last = new Spliterators.AbstractSpliterator<>(4, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED) {
+			private int next = 1;
+			private boolean split;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Integer> action) {
+				if (next > 4) {
+					return false;
+				}
+				action.accept(next++);
+				return true;
+			}
+
+			@Override
+			public Spliterator<Integer> trySplit() {
+				split = true;
+				return super.trySplit();
+			}
+
+			@Override
+			public int characteristics() {
+				return split ? Spliterator.ORDERED : super.characteristics();
+			}
+		};
+		Spliterator<Integer> spliterator = concat(Stream.of(0), StreamSupport.stream(last, false)).spliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+		assertEquals(List.of(0), StreamSupport.stream(spliterator.trySplit(), false).toList());
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+		assertEquals(List.of(1, 2, 3, 4), StreamSupport.stream(spliterator.trySplit(), false).toList());
+		assertFalse(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+		assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+	}
+
+	@Test
+	public void testConcatLazy() {
+		AtomicInteger opened = new AtomicInteger();
+		AtomicInteger open = new AtomicInteger();
+		List<Supplier<Stream<Integer>>> suppliers = IntStream.range(0, 10)
+				.<Supplier<Stream<Integer>>> mapToObj(i -> () -> {
+					opened.incrementAndGet();
+					assertEquals(1, open.incrementAndGet());
+					return IntStream.range(i * 10, i * 10 + 10).boxed().onClose(open::decrementAndGet);
+				})
+				.toList();
+
+		Stream<Integer> stream = concatLazy(suppliers);
+		assertEquals(0, opened.get());
+		assertEquals(IntStream.range(0, 100).boxed().toList(), stream.toList());
+		assertEquals(10, opened.get());
+		assertEquals(0, open.get());
+
+		// the streams are only opened as far as they are needed
+		// and closing the stream closes the stream which is currently open
+		opened.set(0);
+		try (Stream<Integer> s = concatLazy(suppliers)) {
+			assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11), s.limit(12).toList());
+			assertEquals(2, opened.get());
+			assertEquals(1, open.get());
+		}
+		assertEquals(0, open.get());
+
+		assertEquals(List.of(), concatLazy().toList());
+	}
+
+	@Test
+	public void testStreamBatches() {
+		List<Integer> list = IntStream.range(0, 10_000).boxed().toList();
+
+		Spliterator<Integer> spliterator = stream(list.iterator(), BatchPolicy.fixed(100), false).spliterator();
+		Spliterator<Integer> batch = spliterator.trySplit();
+		assertEquals(100L, batch.getExactSizeIfKnown());
+		assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+		assertEquals(100L, spliterator.trySplit().getExactSizeIfKnown());
+
+		// the batches never exceed the estimated size, and the estimate runs down
+		spliterator = stream(list.iterator(), 150L, BatchPolicy.fixed(100), false).spliterator();
+		assertEquals(100L, spliterator.trySplit().getExactSizeIfKnown());
+		assertEquals(50L, spliterator.estimateSize());
+		assertEquals(50L, spliterator.trySplit().getExactSizeIfKnown());
+
+		// and so it does while advancing
+		spliterator = stream(list.subList(0, 150).iterator(), 150L, BatchPolicy.fixed(100), false).spliterator();
+		for (int i = 0; i < 100; i++) {
+			assertTrue(spliterator.tryAdvance(v -> {
+			}));
+		}
+		assertEquals(50L, spliterator.estimateSize());
+		assertEquals(50L, spliterator.trySplit().getExactSizeIfKnown());
+		spliterator = stream(list.subList(0, 150).iterator(), 150L, BatchPolicy.fixed(100), false).spliterator();
+		assertTrue(spliterator.tryAdvance(v -> {
+		}));
+		spliterator.forEachRemaining(v -> {
+		});
+		assertEquals(0L, spliterator.estimateSize());
+
+		assertEquals(list, stream(list.iterator(), list.size(), BatchPolicy.adaptive(), true).toList());
+		assertEquals(49_995_000L, stream(list.iterator(), BatchPolicy.growing(), true).mapToLong(i -> i).sum());
+		assertEquals(49_995_000L, stream((Iterable<Integer>) list::iterator, BatchPolicy.fixed(7), true).mapToLong(i -> i).sum());
+	}
+
+	@Test
+	public void testAdaptiveBatchPolicy() {
+		BatchPolicy policy = BatchPolicy.adaptive(Duration.ofMillis(1));
+		// doubles until the cost is known
+		assertEquals(16, policy.nextBatchSize(0, Long.MAX_VALUE, -1));
+		assertEquals(64, policy.nextBatchSize(32, Long.MAX_VALUE, -1));
+		// cheap elements come in larger batches than expensive ones
+		assertEquals(1_000, policy.nextBatchSize(64, Long.MAX_VALUE, 1_000));
+		assertEquals(10, policy.nextBatchSize(64, Long.MAX_VALUE, 100_000));
+		assertEquals(1, policy.nextBatchSize(64, Long.MAX_VALUE, 10_000_000));
+		// the remaining elements are spread over the workers
+		assertTrue(policy.nextBatchSize(64, 100, 1) <= 100);
+
+		// the next batch is based on the time it took to consume the previous one, as handed to the policy
+		List<Long> measured = new ArrayList<>();
+		Spliterator<Integer> spliterator = stream(IntStream.range(0, 200).iterator(), (previous, remaining, nanosPerElement) -> {
+			measured.add(nanosPerElement);
+			return nanosPerElement < 0 ? 16 : 1;
+		}, true).spliterator();
+		Spliterator<Integer> batch = spliterator.trySplit();
+		assertEquals(16L, batch.getExactSizeIfKnown());
+		assertEquals(List.of(-1L), measured);
+		batch.forEachRemaining(i -> {
+		});
+		assertEquals(1L, spliterator.trySplit().getExactSizeIfKnown());
+		assertEquals(2, measured.size());
+		assertTrue(measured.get(1) >= 0);
+	}
+
+	@Test
+	public void testChunked() {
+		assertEquals(List.of(List.of(0, 1, 2), List.of(3, 4, 5), List.of(6)), chunked(IntStream.range(0, 7).boxed(), 3).toList());
+		assertEquals(List.of(), chunked(Stream.empty(), 3).toList());
+		assertEquals(3L, chunked(IntStream.range(0, 7).boxed(), 3).spliterator().getExactSizeIfKnown());
+		assertThrowsExactly(IllegalArgumentException.class, () -> chunked(Stream.of(1), 0));
+
+		// the chunks are taken lazily
+		AtomicInteger taken = new AtomicInteger();
+		assertEquals(List.of(List.of(0, 1)), chunked(IntStream.iterate(0, i -> i + 1).boxed().peek(i -> taken.incrementAndGet()), 2).limit(1).toList());
+		assertEquals(2, taken.get());
+
+		// a reused chunk is only valid until the next one
+		List<List<Integer>> copies = chunked(IntStream.range(0, 7).boxed(), 3, true).map(List::copyOf).toList();
+		assertEquals(List.of(List.of(0, 1, 2), List.of(3, 4, 5), List.of(6)), copies);
+	}
+
+	@Test
+	public void testWindowed() {
+		assertEquals(List.of(List.of(0, 1, 2), List.of(1, 2, 3), List.of(2, 3, 4)), windowed(IntStream.range(0, 5).boxed(), 3, 1).toList());
+		assertEquals(List.of(List.of(0, 1), List.of(3, 4)), windowed(IntStream.range(0, 6).boxed(), 2, 3).toList());
+		assertEquals(List.of(), windowed(IntStream.range(0, 2).boxed(), 3, 1).toList());
+		assertEquals(3L, windowed(IntStream.range(0, 5).boxed(), 3, 1).spliterator().getExactSizeIfKnown());
+		assertEquals(List.of(List.of(0, 1, 2), List.of(2, 3, 4)), windowed(IntStream.range(0, 6).boxed(), 3, 2, true).map(List::copyOf).toList());
+
+		// the parallel windows are the same as the sequential ones, for all kinds of sizes and steps
+		for (int size = 1; size <= 5; size++) {
+			for (int step = 1; step <= 7; step++) {
+				for (int n : new int[] { 0, 1, 7, 100, 1_001 }) {
+					List<Integer> list = IntStream.range(0, n).boxed().toList();
+					List<List<Integer>> expected = windows(list, size, step, false);
+					assertEquals(expected, windowed(list.stream(), size, step).toList());
+					assertEquals(expected, windowed(list.parallelStream(), size, step).toList());
+					assertEquals(expected, windowed(list.parallelStream(), size, step, true).map(List::copyOf).toList());
+					assertEquals(expected.size(), windowed(list.stream(), size, step).spliterator().getExactSizeIfKnown());
+					if (step == size) {
+						expected = windows(list, size, step, true);
+						assertEquals(expected, chunked(list.parallelStream(), size).toList());
+						assertEquals(expected.size(), chunked(list.stream(), size).spliterator().getExactSizeIfKnown());
+					}
+				}
+			}
+		}
+	}
+
+	private static List<List<Integer>> windows(List<Integer> list, int size, int step, boolean partial) {
+		List<List<Integer>> windows = new ArrayList<>();
+		for (int i = 0; i < list.size(); i += step) {
+			if (i + size <= list.size() || partial) {
+				windows.add(list.subList(i, Math.min(i + size, list.size())));
+			}
+		}
+		return windows;
+	}
+
 	@SuppressWarnings("unchecked")
 	static String concatAll(List<String>... lists) {
 		Stream<String>[] streams = Stream.of(lists)
@@ -99,4 +345,400 @@ public class StreamsTest {
 		});
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testCascadingCharacteristics() {
+		Spliterator<Integer> spliterator = cascading(5, (UnaryOperator<Integer>) i -> i > 0 ? i - 1 : null).spliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE));
+		assertTrue(spliterator.tryAdvance(i -> assertEquals(5, i)));
+		List<Integer> rest = new ArrayList<>();
+		spliterator.forEachRemaining(rest::add);
+		assertEquals(List.of(4, 3, 2, 1, 0), rest);
+		assertEquals(0L, spliterator.estimateSize());
+		assertEquals(0L, cascading((Integer) null, (UnaryOperator<Integer>) i -> i).count());
+	}
+
+	@Test
+	public void testCascadingFailure() {
+		UnaryOperator<Integer> next = i -> {
+			if (i == 3) {
+				throw new IllegalStateException();
+			}
+			return i - 1;
+		};
+		// element by element
+		List<Integer> advanced = new ArrayList<>();
+		Spliterator<Integer> spliterator = cascading(5, next).spliterator();
+		assertThrowsExactly(IllegalStateException.class, () -> {
+			while (spliterator.tryAdvance(advanced::add)) {
+				// keep advancing
+			}
+		});
+		assertEquals(List.of(5, 4, 3), advanced);
+		// all at once
+		List<Integer> all = new ArrayList<>();
+		assertThrowsExactly(IllegalStateException.class, () -> cascading(5, next).spliterator().forEachRemaining(all::add));
+		assertEquals(advanced, all);
+	}
+
+	private static class TestNode {
+		private final int id;
+		private final List<TestNode> children = new ArrayList<>();
+
+		TestNode(int id) {
+			this.id = id;
+		}
+
+		TestNode add(TestNode... nodes) {
+			children.addAll(Arrays.asList(nodes));
+			return this;
+		}
+
+		List<TestNode> getChildren() {
+			return children;
+		}
+
+		// a complete tree, with the given number of children per node
+		static TestNode complete(int depth, int width, AtomicInteger ids) {
+			TestNode node = new TestNode(ids.getAndIncrement());
+			for (int i = 0; depth > 0 && i < width; i++) {
+				node.add(complete(depth - 1, width, ids));
+			}
+			return node;
+		}
+	}
+
+	@Test
+	public void testTree() {
+		//        0
+		//     1     2
+		//   3   4     5
+		TestNode root = new TestNode(0).add(
+				new TestNode(1).add(new TestNode(3), new TestNode(4)),
+				new TestNode(2).add(new TestNode(5)));
+
+		assertEquals(List.of(0, 1, 3, 4, 2, 5), tree(root, TestNode::getChildren).map(n -> n.id).toList());
+		assertEquals(List.of(0, 1, 2, 3, 4, 5), tree(root, TestNode::getChildren, Traversal.BREADTH_FIRST).map(n -> n.id).toList());
+		assertEquals(List.of(0, 1, 2), tree(root, TestNode::getChildren, Traversal.DEPTH_FIRST, 1, false).map(n -> n.id).toList());
+		assertEquals(List.of(0, 1, 2), tree(root, TestNode::getChildren, Traversal.BREADTH_FIRST, 1, false).map(n -> n.id).toList());
+		assertEquals(List.of(0), tree(root, TestNode::getChildren, Traversal.DEPTH_FIRST, 0, false).map(n -> n.id).toList());
+		assertEquals(0L, tree((TestNode) null, TestNode::getChildren).count());
+	}
+
+	@Test
+	public void testCyclicTree() {
+		TestNode a = new TestNode(0);
+		TestNode b = new TestNode(1);
+		TestNode c = new TestNode(2);
+		a.add(b, c);
+		b.add(a, c);
+		c.add(null, a);
+
+		assertEquals(List.of(0, 1, 2), tree(a, TestNode::getChildren, Traversal.DEPTH_FIRST, Integer.MAX_VALUE, true).map(n -> n.id).toList());
+		assertEquals(List.of(0, 1, 2), tree(a, TestNode::getChildren, Traversal.BREADTH_FIRST, Integer.MAX_VALUE, true).map(n -> n.id).toList());
+		// without cycle detection, the depth limit still ends the walk
+		assertEquals(List.of(0, 1, 0, 2, 2, 0), tree(a, TestNode::getChildren, Traversal.DEPTH_FIRST, 2, false).map(n -> n.id).limit(6).toList());
+	}
+
+	@Test
+	public void testParallelTree() {
+		TestNode root = TestNode.complete(8, 4, new AtomicInteger());
+		List<Integer> sequential = tree(root, TestNode::getChildren).map(n -> n.id).toList();
+		assertEquals(87_381, sequential.size());
+
+		// both depth first and breadth first streams keep their order
+		assertEquals(sequential, tree(root, TestNode::getChildren).parallel().map(n -> n.id).toList());
+		List<Integer> breadthFirst = tree(root, TestNode::getChildren, Traversal.BREADTH_FIRST).map(n -> n.id).toList();
+		assertEquals(87_381, breadthFirst.size());
+		assertEquals(breadthFirst, tree(root, TestNode::getChildren, Traversal.BREADTH_FIRST).parallel().map(n -> n.id).toList());
+		assertTrue(tree(root, TestNode::getChildren, Traversal.BREADTH_FIRST).spliterator().hasCharacteristics(Spliterator.ORDERED));
+		long sum = sequential.stream().mapToLong(i -> i).sum();
+		assertEquals(sum, tree(root, TestNode::getChildren, Traversal.DEPTH_FIRST, Integer.MAX_VALUE, true).parallel().mapToLong(n -> n.id).sum());
+
+		// the tree is actually split
+		Spliterator<TestNode> spliterator = tree(root, TestNode::getChildren).spliterator();
+		Spliterator<TestNode> prefix = spliterator.trySplit();
+		assertEquals(List.of(0), StreamSupport.stream(prefix, false).map(n -> n.id).toList());
+		prefix = spliterator.trySplit();
+		assertEquals(2 * 21_845L, StreamSupport.stream(prefix, false).count());
+		assertEquals(2 * 21_845L, StreamSupport.stream(spliterator, false).count());
+	}
+
+	@Test
+	public void testCascadingIndices() {
+		// a tree of indices, pointing at their parent, with the root pointing at itself
+		int[] parents = { 0, 0, 1, 1, 3, 4 };
+		assertArrayEquals(new int[] { 5, 4, 3, 1, 0 }, cascadingInt(5, i -> parents[i]).toArray());
+		assertArrayEquals(new int[] { 2, 1, 0 }, cascadingInt(2, i -> parents[i]).toArray());
+		assertArrayEquals(new int[0], cascadingInt(-1, i -> parents[i]).toArray());
+		// or with the root pointing at -1
+		assertArrayEquals(new long[] { 3L, 2L, 1L, 0L }, cascadingLong(3L, i -> i - 1).toArray());
+		assertEquals(OptionalInt.of(3), cascadingInt(5, i -> parents[i]).skip(2).findFirst());
+	}
+
+	@Test
+	public void testMapConcurrent() {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Function<Integer, String> slow = i -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			sleep(i % 3 == 0 ? 20 : 1);
+			running.decrementAndGet();
+			return Integer.toString(i);
+		};
+		List<String> expected = IntStream.range(0, 100).mapToObj(Integer::toString).toList();
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			assertEquals(expected, mapConcurrent(IntStream.range(0, 100).boxed(), slow, 4, executor).toList());
+			assertTrue(maxRunning.get() <= 4);
+			assertEquals(expected, mapConcurrent(IntStream.range(0, 100).boxed(), slow, 1).toList());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testMapConcurrentUnordered() {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch received = new CountDownLatch(1);
+		List<Integer> result = mapConcurrentUnordered(IntStream.range(0, 50).boxed(), i -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			// the first call waits for another result to be served, so it doesn't come first
+			if (i == 0) {
+				await(received);
+			}
+			running.decrementAndGet();
+			return i;
+		}, 4).peek(i -> received.countDown()).toList();
+		assertTrue(maxRunning.get() <= 4);
+		assertTrue(result.indexOf(0) > 0);
+		assertEquals(IntStream.range(0, 50).boxed().toList(), result.stream().sorted().toList());
+	}
+
+	@Test
+	public void testMapConcurrentFailure() {
+		Function<Integer, Integer> failing = i -> {
+			if (i == 5) {
+				throw new IllegalStateException("failing call");
+			}
+			return i;
+		};
+		assertThrowsExactly(IllegalStateException.class, () -> mapConcurrent(IntStream.range(0, 10).boxed(), failing, 3).toList());
+		assertThrowsExactly(IllegalStateException.class, () -> mapConcurrentUnordered(IntStream.range(0, 10).boxed(), failing, 3).toList());
+		assertThrowsExactly(IllegalArgumentException.class, () -> mapConcurrent(Stream.of(1), failing, 0).toList());
+	}
+
+	@Test
+	public void testTee() {
+		AtomicInteger pulled = new AtomicInteger();
+		List<Stream<Integer>> streams = tee(IntStream.range(0, 10_000).boxed().peek(i -> pulled.incrementAndGet()), 3, 16);
+		assertEquals(3, streams.size());
+		CompletableFuture<Long> count = CompletableFuture.supplyAsync(() -> streams.get(0).count());
+		CompletableFuture<Integer> sum = CompletableFuture.supplyAsync(() -> streams.get(1).mapToInt(i -> i).sum());
+		CompletableFuture<List<Integer>> list = CompletableFuture.supplyAsync(() -> streams.get(2).toList());
+		assertEquals(10_000L, count.join());
+		assertEquals(49_995_000, sum.join());
+		assertEquals(IntStream.range(0, 10_000).boxed().toList(), list.join());
+		// the input stream has been read only once
+		assertEquals(10_000, pulled.get());
+	}
+
+	@Test
+	public void testTeeBackpressure() {
+		AtomicInteger pulled = new AtomicInteger();
+		AtomicInteger maxAhead = new AtomicInteger();
+		AtomicInteger slowConsumed = new AtomicInteger();
+		List<Stream<Integer>> streams = tee(IntStream.range(0, 100).boxed().peek(i -> pulled.incrementAndGet()), 2, 4);
+		CompletableFuture<Long> fast = CompletableFuture.supplyAsync(() -> streams.get(0).count());
+		streams.get(1).forEach(i -> {
+			sleep(2);
+			// the element being pushed is counted, but not yet buffered
+			maxAhead.accumulateAndGet(pulled.get() - slowConsumed.incrementAndGet(), Math::max);
+		});
+		assertEquals(100L, fast.join());
+		assertTrue(maxAhead.get() <= 5, "the producer ran ahead by " + maxAhead.get());
+	}
+
+	@Test
+	public void testTeeClose() {
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		List<Stream<Integer>> streams = tee(Stream.iterate(0, i -> i + 1).onClose(() -> closed.complete(null)), 2, 8);
+		// a closed stream no longer holds back the others
+		streams.get(0).close();
+		try (Stream<Integer> stream = streams.get(1)) {
+			assertEquals(List.of(0, 1, 2, 3, 4), stream.limit(5).toList());
+		}
+		closed.orTimeout(5, TimeUnit.SECONDS).join();
+
+		CompletableFuture<Void> notStarted = new CompletableFuture<>();
+		tee(Stream.of(1, 2, 3).onClose(() -> notStarted.complete(null)), 2).forEach(Stream::close);
+		assertTrue(notStarted.isDone());
+	}
+
+	@Test
+	public void testTeeFailure() {
+		Stream<Integer> failing = Stream.of(1, 2, 3).map(i -> {
+			if (i == 3) {
+				throw new IllegalStateException("failing input");
+			}
+			return i;
+		});
+		List<Stream<Integer>> streams = tee(failing, 2);
+		for (Stream<Integer> stream : streams) {
+			List<Integer> seen = new ArrayList<>();
+			assertThrowsExactly(IllegalStateException.class, () -> stream.forEach(seen::add));
+			assertEquals(List.of(1, 2), seen);
+		}
+		assertThrowsExactly(IllegalArgumentException.class, () -> tee(Stream.of(1), 0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMerge() {
+		// the slow stream waits for the fast one to be finished, which it doesn't hold back
+		CountDownLatch fastDone = new CountDownLatch(1);
+		Stream<Integer> slow = IntStream.range(0, 5).boxed().peek(i -> {
+			if (i == 4) {
+				await(fastDone);
+			}
+		});
+		// closed once all of its elements have been pushed
+		Stream<Integer> fast = IntStream.range(100, 200).boxed().onClose(fastDone::countDown);
+		List<Integer> result = merge(slow, fast).toList();
+		assertEquals(105, result.size());
+		assertTrue(result.indexOf(4) > result.indexOf(199));
+		assertEquals(IntStream.range(0, 5).boxed().toList(), result.stream().filter(i -> i < 100).toList());
+		assertEquals(IntStream.range(100, 200).boxed().toList(), result.stream().filter(i -> i >= 100).toList());
+
+		// the streams are drained concurrently, so every one of them gets to wait for all the others
+		CountDownLatch allStarted = new CountDownLatch(4);
+		Stream<Integer>[] waiting = IntStream.range(0, 4).mapToObj(i -> Stream.of(i).peek(x -> {
+			allStarted.countDown();
+			await(allStarted);
+		})).toArray(Stream[]::new);
+		assertEquals(List.of(0, 1, 2, 3), merge(waiting).sorted().toList());
+
+		assertEquals(List.of(), merge().toList());
+		assertEquals(Arrays.asList(1, null, 2), merge(Stream.of(1, null, 2)).toList());
+	}
+
+	@Test
+	public void testMergeFailure() {
+		Stream<Integer> failing = Stream.of(1, 2, 3).map(i -> {
+			if (i == 3) {
+				throw new IllegalStateException("failing input");
+			}
+			return i;
+		});
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		Stream<Integer> endless = Stream.iterate(0, i -> i + 1).onClose(() -> closed.complete(null));
+		assertThrowsExactly(IllegalStateException.class, () -> merge(failing, endless).forEach(i -> {
+		}));
+		// the other streams are stopped
+		closed.orTimeout(5, TimeUnit.SECONDS).join();
+	}
+
+	@Test
+	public void testMergeRejected() {
+		ExecutorService shutDown = Executors.newSingleThreadExecutor();
+		shutDown.shutdown();
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		Stream<Integer> merged = merge(List.of(Stream.of(1, 2).onClose(() -> closed.complete(null))), 16, shutDown);
+		assertThrowsExactly(RejectedExecutionException.class, merged::toList);
+		assertTrue(closed.isDone());
+
+		// the executor only takes the first stream, which is stopped once the second one is rejected
+		AtomicInteger submitted = new AtomicInteger();
+		Executor once = task -> {
+			if (submitted.getAndIncrement() > 0) {
+				throw new RejectedExecutionException();
+			}
+			new Thread(task).start();
+		};
+		CompletableFuture<Void> first = new CompletableFuture<>();
+		CompletableFuture<Void> second = new CompletableFuture<>();
+		Stream<Integer> partial = merge(List.of(Stream.iterate(0, i -> i + 1).onClose(() -> first.complete(null)),
+				Stream.of(1).onClose(() -> second.complete(null))), 16, once);
+		assertThrowsExactly(RejectedExecutionException.class, () -> partial.forEach(i -> {
+		}));
+		assertTrue(second.isDone());
+		first.orTimeout(5, TimeUnit.SECONDS).join();
+	}
+
+	@Test
+	public void testMergeClose() {
+		CompletableFuture<Void> first = new CompletableFuture<>();
+		CompletableFuture<Void> second = new CompletableFuture<>();
+		try (Stream<Integer> merged = merge(Stream.iterate(0, i -> i + 1).onClose(() -> first.complete(null)),
+				Stream.iterate(0, i -> i - 1).onClose(() -> second.complete(null)))) {
+			assertEquals(10L, merged.limit(10).count());
+		}
+		CompletableFuture.allOf(first, second).orTimeout(5, TimeUnit.SECONDS).join();
+
+		CompletableFuture<Void> notStarted = new CompletableFuture<>();
+		merge(Stream.of(1).onClose(() -> notStarted.complete(null))).close();
+		assertTrue(notStarted.isDone());
+	}
+
+	@Test
+	public void testMergeSorted() {
+		Stream<Integer> a = Stream.of(1, 4, 7, 10);
+		Stream<Integer> b = Stream.of(2, 5, 8);
+		Stream<Integer> c = Stream.of(3, 6, 9, 11, 12);
+		assertEquals(IntStream.rangeClosed(1, 12).boxed().toList(), mergeSorted(Comparator.<Integer> naturalOrder(), a, b, c).toList());
+
+		// equal elements keep the order of their streams
+		Comparator<String> byLength = Comparator.comparingInt(String::length);
+		assertEquals(List.of("a", "b", "c", "dd", "ee", "fff"),
+				mergeSorted(byLength, Stream.of("a", "dd"), Stream.of("b", "c", "ee"), Stream.<String> empty(), Stream.of("fff")).toList());
+
+		assertEquals(List.of(), mergeSorted(byLength).toList());
+	}
+
+	@Test
+	public void testMergeSortedLazily() {
+		AtomicInteger pulled = new AtomicInteger();
+		List<Stream<Integer>> partitions = IntStream.range(0, 4)
+				.mapToObj(p -> Stream.iterate(p, i -> i + 4).peek(i -> pulled.incrementAndGet()))
+				.toList();
+		assertEquals(IntStream.range(0, 20).boxed().toList(), mergeSorted(Comparator.<Integer> naturalOrder(), partitions).limit(20).toList());
+		// only one element per stream is held on to
+		assertTrue(pulled.get() <= 24);
+	}
+
+	@Test
+	public void testMergeSortedCharacteristics() {
+		Spliterator<Integer> spliterator = mergeSorted(Comparator.<Integer> naturalOrder(), Stream.of(1, 3), Stream.of(2)).spliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(3L, spliterator.getExactSizeIfKnown());
+		assertEquals(null, spliterator.getComparator());
+
+		Comparator<Integer> reversed = Comparator.reverseOrder();
+		assertEquals(reversed, mergeSorted(reversed, Stream.of(3, 1), Stream.of(2)).spliterator().getComparator());
+
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		mergeSorted(reversed, Stream.of(1).onClose(() -> closed.complete(null))).close();
+		assertTrue(closed.isDone());
+	}
+
+	// waits for the given latch, and fails when that takes too long
+	private static void await(CountDownLatch latch) {
+		try {
+			if (!latch.await(5, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("timed out");
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}